@@ -0,0 +1,56 @@
+package searchengine.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сохранённые HTML-страницы из {@code src/jmh/resources/corpus}, на которых
+ * гоняются бенчмарки. Список файлов лежит в {@code corpus/pages.txt}.
+ */
+public final class Corpus {
+
+    public static final String SITE_URL = "https://www.example.ru";
+
+    private Corpus() {
+    }
+
+    public static List<Page> load() {
+        List<Page> pages = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open("pages.txt"), StandardCharsets.UTF_8))) {
+            String name;
+            while ((name = reader.readLine()) != null) {
+                if (!name.isBlank()) {
+                    pages.add(load(name.trim()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pages;
+    }
+
+    public static Page load(String name) {
+        try (InputStream in = open(name)) {
+            return new Page(name, SITE_URL + "/" + name, in.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name);
+        if (in == null) {
+            throw new IOException("Нет файла корпуса: " + name);
+        }
+        return in;
+    }
+
+    public record Page(String name, String url, byte[] html) {
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.LemmaFinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация текста страниц корпуса словарями LuceneMorphology.
+ * Текст извлекается из HTML заранее, поэтому меряется только {@link LemmaFinder}.
+ * {@code cacheSize = 0} — каждое слово идёт в словари, как без кэша лемм.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LemmaFinderBenchmark {
+
+    @Param({"news-article.html", "catalog.html", "docs-guide.html"})
+    private String page;
+
+    @Param({"0", "200000"})
+    private int cacheSize;
+
+    private LemmaFinder lemmaFinder;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaFinder = new LemmaFinder(cacheSize);
+        Corpus.Page corpusPage = Corpus.load(page);
+        text = Jsoup.parse(new ByteArrayInputStream(corpusPage.html()), "UTF-8", corpusPage.url()).text();
+    }
+
+    @Benchmark
+    public Map<String, Integer> collectLemmas() {
+        return lemmaFinder.collectLemmas(text);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, Integer> collectLemmasConcurrently() {
+        return lemmaFinder.collectLemmas(text);
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор страницы Jsoup и извлечение ссылок {@code a[href]} так же, как
+ * на стадии разбора {@code CrawlPipeline}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    @Param({"news-article.html", "catalog.html", "docs-guide.html"})
+    private String page;
+
+    private Corpus.Page corpusPage;
+
+    @Setup
+    public void setUp() {
+        corpusPage = Corpus.load(page);
+    }
+
+    @Benchmark
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(corpusPage.html()), "UTF-8", corpusPage.url());
+    }
+
+    @Benchmark
+    public int parseAndExtractLinks(Blackhole blackhole) throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(corpusPage.html()), "UTF-8", corpusPage.url());
+        int links = 0;
+        for (Element element : document.select("a[href]")) {
+            String absUrl = element.absUrl("href");
+            if (absUrl.startsWith(Corpus.SITE_URL)) {
+                blackhole.consume(absUrl);
+                links++;
+            }
+        }
+        return links;
+    }
+}
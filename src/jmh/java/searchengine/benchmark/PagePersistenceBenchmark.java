@@ -0,0 +1,130 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.Application;
+import searchengine.model.PageModel;
+import searchengine.model.SiteModel;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.LemmaFinder;
+import searchengine.services.LemmaService;
+import searchengine.services.PageService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетная запись страниц ({@link PageService#savePageModels}) и их лемм
+ * ({@link LemmaService}) во встроенную H2 в режиме совместимости с MySQL.
+ * <p>
+ * Каждый замер — серия из {@code batchSize} пакетов; после итерации таблицы
+ * очищаются, чтобы объём базы не рос от итерации к итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 20)
+@Measurement(iterations = 10, batchSize = 20)
+@Fork(1)
+public class PagePersistenceBenchmark {
+
+    @Param({"50"})
+    private int pagesPerBatch;
+
+    @Param({"true", "false"})
+    private boolean compressContent;
+
+    private ConfigurableApplicationContext applicationContext;
+    private PageService pageService;
+    private LemmaService lemmaService;
+    private JdbcTemplate jdbcTemplate;
+    private SiteModel siteModel;
+    private final List<String> contents = new ArrayList<>();
+    private final List<Map<String, Integer>> lemmas = new ArrayList<>();
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        applicationContext = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--crawler-settings.compress-content=" + compressContent,
+                        "--logging.level.root=WARN");
+        pageService = applicationContext.getBean(PageService.class);
+        lemmaService = applicationContext.getBean(LemmaService.class);
+        jdbcTemplate = applicationContext.getBean(JdbcTemplate.class);
+        LemmaFinder lemmaFinder = applicationContext.getBean(LemmaFinder.class);
+        for (Corpus.Page page : Corpus.load()) {
+            String html = new String(page.html(), StandardCharsets.UTF_8);
+            contents.add(html);
+            lemmas.add(lemmaFinder.collectLemmas(Jsoup.parse(new ByteArrayInputStream(page.html()), "UTF-8", page.url()).text()));
+        }
+
+        siteModel = new SiteModel();
+        siteModel.setUrl(Corpus.SITE_URL);
+        siteModel.setName("Benchmark");
+        siteModel.setStatus(Status.INDEXING);
+        siteModel.setStatusTime(LocalDateTime.now());
+        siteModel = applicationContext.getBean(SiteRepository.class).save(siteModel);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearPages() {
+        lemmaService.flushSite(siteModel);
+        jdbcTemplate.update("DELETE FROM `index`");
+        jdbcTemplate.update("DELETE FROM lemma");
+        jdbcTemplate.update("DELETE FROM page");
+        lemmaService.discardSite(siteModel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Benchmark
+    public List<PageModel> savePages() {
+        List<PageModel> pageModels = createPages();
+        pageService.savePageModels(pageModels);
+        return pageModels;
+    }
+
+    @Benchmark
+    public List<PageModel> savePagesWithLemmas() {
+        List<PageModel> pageModels = createPages();
+        pageService.savePageModels(pageModels);
+        for (int i = 0; i < pageModels.size(); i++) {
+            lemmaService.indexPage(pageModels.get(i), lemmas.get(i % lemmas.size()));
+        }
+        return pageModels;
+    }
+
+    private List<PageModel> createPages() {
+        List<PageModel> pageModels = new ArrayList<>(pagesPerBatch);
+        for (int i = 0; i < pagesPerBatch; i++) {
+            PageModel pageModel = new PageModel();
+            pageModel.setSite(siteModel);
+            pageModel.setPath(Corpus.SITE_URL + "/page-" + sequence++);
+            pageModel.setCode(200);
+            pageModel.setContent(contents.get(i % contents.size()));
+            pageModels.add(pageModel);
+        }
+        return pageModels;
+    }
+}
@@ -0,0 +1,58 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.BloomVisitedUrlSet;
+import searchengine.services.ConcurrentVisitedUrlSet;
+import searchengine.services.VisitedUrlSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отсев повторных адресов: все ссылки корпуса (с повторами, как их видит обход)
+ * добавляются в новое множество посещённых адресов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisitedUrlSetBenchmark {
+
+    @Param({"EXACT", "BLOOM"})
+    private String visitedSet;
+
+    @Param({"100000"})
+    private int bloomExpectedUrls;
+
+    private final List<String> urls = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        for (Corpus.Page page : Corpus.load()) {
+            for (Element element : Jsoup.parse(new ByteArrayInputStream(page.html()), "UTF-8", page.url()).select("a[href]")) {
+                urls.add(element.absUrl("href"));
+            }
+        }
+    }
+
+    @Benchmark
+    public int deduplicate() {
+        VisitedUrlSet visitedUrls = visitedSet.equals("BLOOM")
+                ? new BloomVisitedUrlSet(bloomExpectedUrls, 0.001)
+                : new ConcurrentVisitedUrlSet();
+        int added = 0;
+        for (String url : urls) {
+            if (visitedUrls.add(url)) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,159 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    /**
+     * EXACT — множество всех адресов в памяти, BLOOM — компактный фильтр Блума
+     * для очень больших сайтов (ценой редкого пропуска страницы).
+     */
+    private VisitedSetMode visitedSet = VisitedSetMode.EXACT;
+    private int bloomExpectedUrls = 1_000_000;
+    private double bloomFalsePositiveRate = 0.001;
+
+    /**
+     * Сколько задач каждой стадии обхода сайта выполняется одновременно: загрузка
+     * по HTTP и разбор HTML. Если следующая стадия копит больше {@code queueCapacity}
+     * страниц сайта (для разбора — ещё не записанных в БД), предыдущая ждёт.
+     */
+    private int fetchThreads = 8;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 100;
+
+    /**
+     * Запись страниц в БД отдельным потоком: пачками до {@code persistBatchSize}
+     * страниц всех сайтов, неполная пачка пишется через {@code persistFlushInterval} мс.
+     */
+    private int persistBatchSize = 50;
+    private long persistFlushInterval = 200;
+
+    /**
+     * Как часто в таблицу site пишется ход индексации (status_time и последняя ошибка страницы), мс.
+     */
+    private long statusHeartbeat = 5000;
+
+    /**
+     * Общий пул потоков обхода для всех сайтов (0 — fetchThreads + parseThreads)
+     * и предел потоков одного сайта (0 — без отдельного предела).
+     * Потоки делятся между сайтами поровну или по весу crawlWeight из indexing-settings.
+     */
+    private int crawlWorkers = 0;
+    private int maxWorkersPerSite = 0;
+
+    /**
+     * POOL — загрузку выполняют {@code fetchThreads} потоков конвейера.
+     * VIRTUAL — каждая загрузка идёт в своём виртуальном потоке (Java 21+),
+     * а одновременность ограничена {@code maxConcurrentFetches} на всё приложение
+     * и {@code maxFetchesPerHost} на один хост. Сайт — один хост, поэтому на деле
+     * загрузок не больше чем min(maxConcurrentFetches, число сайтов × maxFetchesPerHost).
+     */
+    private FetchMode fetchMode = FetchMode.POOL;
+    private int maxConcurrentFetches = 1000;
+    private int maxFetchesPerHost = 16;
+
+    /**
+     * Вежливость по умолчанию: интервал между запросами к одному хосту и
+     * допустимая пачка запросов без паузы. Для сайта их можно переопределить
+     * в indexing-settings, а Crawl-delay из robots.txt увеличивает интервал.
+     */
+    private long crawlDelay = 500;
+    private int crawlBurst = 1;
+    private long maxCrawlDelay = 60_000;
+    private boolean respectRobotsTxt = true;
+    private int maxRetries = 3;
+
+    /**
+     * Предел размера тела страницы в байтах (более длинные обрезаются, 0 — без предела)
+     * и общее время одного запроса в миллисекундах.
+     */
+    private long maxBodySize = 5 * 1024 * 1024;
+    private long fetchTimeout = 30_000;
+
+    /**
+     * Общий HTTP-клиент обхода: версия протокола (HTTP_2 с откатом на HTTP/1.1,
+     * если сервер его не поддерживает) и время установки соединения в миллисекундах.
+     */
+    private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+    private long connectTimeout = 10_000;
+
+    /**
+     * Параметры запроса, которые не влияют на содержимое страницы и отбрасываются
+     * при приведении адресов к одному виду; {@code *} в конце имени — префикс.
+     */
+    private List<String> ignoredQueryParameters = new ArrayList<>(List.of("utm_*", "gclid", "fbclid", "yclid", "_openstat"));
+
+    /**
+     * Страница не сохраняется, если SimHash её основного текста (без меню, шапки
+     * и подвала) отличается от уже сохранённой
+     * страницы сайта не больше чем в {@code nearDuplicateDistance} битах из 64;
+     * -1 — проверка выключена.
+     */
+    private int nearDuplicateDistance = 3;
+
+    /**
+     * Ограничения обхода одного сайта: глубина по ссылкам от стартовой страницы
+     * и число страниц, поставленных в очередь. 0 — без ограничения.
+     */
+    private int maxDepth = 0;
+    private int maxPagesPerSite = 0;
+
+    /**
+     * Брать адреса из sitemap.xml (указанных в robots.txt или из корня сайта),
+     * читая не больше {@code maxSitemapFiles} файлов, включая вложенные индексы.
+     */
+    private boolean useSitemaps = true;
+    private int maxSitemapFiles = 100;
+
+    /**
+     * Повторная индексация без удаления сайта: известные страницы запрашиваются
+     * с If-None-Match/If-Modified-Since, а страницы с ответом 304 или прежним
+     * хэшем содержимого не разбираются и не перезаписываются.
+     */
+    private boolean incremental = false;
+
+    /**
+     * HTML — в page.content хранится HTML страницы целиком, TEXT — только
+     * заголовок и текст, нужные для сниппетов поиска. {@code compressContent}
+     * сжимает содержимое deflate перед записью.
+     */
+    private ContentStorage contentStorage = ContentStorage.HTML;
+    private boolean compressContent = true;
+
+    /**
+     * MEMORY — очередь обхода в памяти; первыми берутся адреса с наименьшей
+     * глубиной. DISK — очередь в файле в каталоге {@code frontierDir}/&lt;id сайта&gt;
+     * в порядке обнаружения адресов (то есть тоже в ширину) с контрольной точкой
+     * раз в {@code frontierCheckpointInterval} мс: обход, прерванный остановкой
+     * или перезапуском приложения, продолжается с того же места.
+     */
+    private FrontierMode frontier = FrontierMode.MEMORY;
+    private String frontierDir = "frontier";
+    private long frontierCheckpointInterval = 10_000;
+
+    public enum VisitedSetMode {
+        EXACT, BLOOM
+    }
+
+    public enum FetchMode {
+        POOL, VIRTUAL
+    }
+
+    public enum ContentStorage {
+        HTML, TEXT
+    }
+
+    public enum FrontierMode {
+        MEMORY, DISK
+    }
+}
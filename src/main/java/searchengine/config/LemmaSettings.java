@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemma-settings")
+public class LemmaSettings {
+    /**
+     * Сколько страниц сайта копится в памяти перед одной пакетной записью
+     * в таблицы lemma и index.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Сколько страниц или лемм удаляется одним запросом при удалении сайта.
+     */
+    private int deleteChunkSize = 1000;
+
+    /**
+     * Сколько слов с их леммами хранит кэш лемматизации (в каждом из двух поколений).
+     */
+    private int cacheSize = 200_000;
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    /**
+     * Леммы, которые встречаются на большей доле страниц сайта, не участвуют в поиске.
+     */
+    private double maxLemmaFrequency = 0.8;
+    /**
+     * Сколько записей обратного индекса (пар страница-ранг) может держать кэш.
+     */
+    private long postingsCacheSize = 5_000_000;
+    private int snippetLength = 240;
+}
@@ -8,4 +8,25 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    /**
+     * Интервал между запросами к сайту в миллисекундах и размер пачки запросов;
+     * если не заданы, берутся из crawler-settings.
+     */
+    private Long crawlDelay;
+    private Integer crawlBurst;
+    /**
+     * Ограничения обхода сайта; если не заданы, берутся из crawler-settings.
+     */
+    private Integer maxDepth;
+    private Integer maxPages;
+    /**
+     * Предел размера страницы в байтах; если не задан, берётся из crawler-settings.
+     */
+    private Long maxBodySize;
+    /**
+     * Доля общего пула потоков обхода относительно других сайтов (по умолчанию 1)
+     * и предел потоков сайта; если не задан, берётся из crawler-settings.
+     */
+    private Integer crawlWeight;
+    private Integer maxWorkers;
 }
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics-settings")
+public class StatisticsSettings {
+    /**
+     * Сколько миллисекунд отдаётся один и тот же снимок статистики:
+     * во время индексации и когда она не идёт.
+     */
+    private long cacheTtl = 2_000;
+    private long idleCacheTtl = 60_000;
+}
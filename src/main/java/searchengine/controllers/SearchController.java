@@ -0,0 +1,30 @@
+package searchengine.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import searchengine.dto.search.SearchResponse;
+import searchengine.services.SearchService;
+
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SearchController {
+
+    private final SearchService searchService;
+
+    @GetMapping("/search")
+    public ResponseEntity<SearchResponse> search(@RequestParam(required = false) String query,
+                                                 @RequestParam(required = false) String site,
+                                                 @RequestParam(defaultValue = "0") int offset,
+                                                 @RequestParam(defaultValue = "20") int limit) {
+        SearchResponse searchResponse = searchService.search(query, site, offset, limit);
+        HttpStatus status = searchResponse.isResult() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(searchResponse);
+    }
+}
@@ -6,6 +6,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import searchengine.dto.statistics.IndexingResponse;
+import searchengine.dto.statistics.IndexingStatusResponse;
+import searchengine.dto.statistics.UrlPage;
+import searchengine.services.CrawlMetrics;
 import searchengine.services.IndexingService;
 
 @RestController
@@ -14,6 +17,7 @@ import searchengine.services.IndexingService;
 public class StartIndexingController {
 
     private final IndexingService<IndexingResponse> indexingService;
+    private final CrawlMetrics crawlMetrics;
 
     @GetMapping("/startIndexing")
     public ResponseEntity<IndexingResponse> startIndexing() {
@@ -28,8 +32,13 @@ public class StartIndexingController {
     }
 
     @PostMapping("/indexPage")
-    public ResponseEntity<IndexingResponse> indexPage(@RequestBody String url) {
+    public ResponseEntity<IndexingResponse> indexPage(UrlPage url) {
         IndexingResponse indexingResponse = indexingService.indexPage(url);
         return ResponseEntity.status(HttpStatus.CREATED).body(indexingResponse);
     }
+
+    @GetMapping("/indexingStatus")
+    public ResponseEntity<IndexingStatusResponse> indexingStatus() {
+        return ResponseEntity.ok(crawlMetrics.getIndexingStatus(indexingService.isIndexing()));
+    }
 }
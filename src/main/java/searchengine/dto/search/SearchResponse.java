@@ -0,0 +1,17 @@
+package searchengine.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchResponse {
+    private boolean result;
+    private String error;
+    private Integer count;
+    private List<SearchData> data;
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IndexingStatusResponse {
+    private boolean result;
+    private boolean indexing;
+    private List<SiteIndexingStatus> sites;
+}
@@ -0,0 +1,22 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class SiteIndexingStatus {
+    private String site;
+    private boolean running;
+    private long elapsedMs;
+    private long pagesFetched;
+    private long pagesSaved;
+    private long bytesDownloaded;
+    private double fetchedPerSecond;
+    private double savedPerSecond;
+    private double meanFetchMs;
+    private double meanPersistMs;
+    private int activeFetches;
+    private Map<String, Integer> queues;
+    private Map<String, Long> errors;
+}
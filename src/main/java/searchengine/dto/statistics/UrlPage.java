@@ -0,0 +1,10 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class UrlPage {
+    private String url;
+}
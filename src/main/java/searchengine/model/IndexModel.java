@@ -0,0 +1,40 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+@Entity
+@Getter
+@Setter
+@ToString
+@Table(name = "`index`", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_index_page_lemma", columnNames = {"page_id", "lemma_id"})
+}, indexes = {
+        @Index(name = "idx_index_lemma", columnList = "lemma_id")
+})
+public class IndexModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "page_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private PageModel page;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lemma_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private LemmaModel lemma;
+
+    @Column(name = "`rank`", nullable = false)
+    private Float rank;
+}
@@ -0,0 +1,35 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+@Entity
+@Getter
+@Setter
+@ToString
+@Table(name = "lemma", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lemma_site", columnNames = {"site_id", "lemma"})
+})
+public class LemmaModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private SiteModel site;
+
+    @Column(name = "lemma", nullable = false, columnDefinition = "VARCHAR(255)")
+    private String lemma;
+
+    @Column(name = "frequency", nullable = false)
+    private Integer frequency;
+}
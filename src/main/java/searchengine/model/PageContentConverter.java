@@ -0,0 +1,107 @@
+package searchengine.model;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранит содержимое страницы в BLOB: первый байт — способ кодирования
+ * (0 — UTF-8 как есть, 1 — UTF-8, сжатый deflate), дальше данные.
+ * Поэтому строки, записанные с разными настройками, читаются одинаково.
+ * <p>
+ * Экземпляр создаёт Hibernate через контейнер бинов Spring, отсюда настройки;
+ * он же бин для записи страниц в обход JPA.
+ */
+@Component
+@Converter
+public class PageContentConverter implements AttributeConverter<String, byte[]> {
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATE = 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean compress;
+
+    public PageContentConverter() {
+        this.compress = false;
+    }
+
+    @Autowired
+    public PageContentConverter(CrawlerSettings crawlerSettings) {
+        this.compress = crawlerSettings.isCompressContent();
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String content) {
+        if (content == null) {
+            return null;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return compress ? deflate(bytes) : withHeader(PLAIN, bytes);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        if (data == null || data.length == 0) {
+            return data == null ? null : "";
+        }
+        return switch (data[0]) {
+            case PLAIN -> new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE -> inflate(data);
+            default -> throw new IllegalStateException("Неизвестный формат содержимого страницы: " + data[0]);
+        };
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 16);
+            output.write(DEFLATE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Содержимое страницы повреждено");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Содержимое страницы повреждено", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withHeader(byte header, byte[] bytes) {
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = header;
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+}
@@ -0,0 +1,9 @@
+package searchengine.model;
+
+/**
+ * Адрес и SimHash текста сохранённой страницы для поиска почти одинаковых страниц.
+ */
+public interface PageFingerprint {
+    String getPath();
+    Long getSimhash();
+}
@@ -1,34 +1,106 @@
 package searchengine.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 @Entity
 @Getter
 @Setter
 @ToString
-@Table(name = "page", indexes = {
-        @Index(name = "idx_path", columnList = "path")
+@Table(name = "page", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_page_site_path_hash", columnNames = {"site_id", "path_hash"})
 })
 public class PageModel {
 
+    public static final String ID_SEQUENCE = "page_seq";
+    public static final int ID_ALLOCATION_SIZE = 100;
+
+    /**
+     * Id выдаются блоками из последовательности (на MySQL — таблица page_seq), а не
+     * AUTO_INCREMENT: так страницы можно вставлять пакетами, зная id заранее.
+     * Новые страницы получают id от {@code PageIdAllocator}.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Integer id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "site_id", nullable = false)
     private SiteModel site;
 
-    @Column(name = "path", nullable = false, columnDefinition = "VARCHAR(255)")
+    /**
+     * Адрес страницы от корня сайта вместе с параметрами запроса, например {@code /news/1?page=2}.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "path", nullable = false, columnDefinition = "TEXT")
     private String path;
 
+    /**
+     * MD5 пути: ключ фиксированной длины для уникального индекса {@code (site_id, path_hash)},
+     * сам путь неограниченной длины в индекс не помещается.
+     */
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @Column(name = "path_hash", nullable = false, columnDefinition = "BINARY(16)")
+    private byte[] pathHash;
+
     @Column(name = "code", nullable = false)
     private Integer code;
 
-    @Column(name = "content", nullable = false, columnDefinition = "MEDIUMTEXT")
+    /**
+     * Загружается лениво (нужен bytecode enhancement Hibernate, см. pom.xml),
+     * чтобы выборки страниц не тянули в память их содержимое.
+     */
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = PageContentConverter.class)
+    @Column(name = "content", nullable = false, columnDefinition = "MEDIUMBLOB")
+    @ToString.Exclude
     private String content;
+
+    @Column(name = "etag", columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    /**
+     * SHA-256 тела ответа в hex, по нему повторная индексация узнаёт неизменившиеся страницы.
+     */
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    /**
+     * SimHash текста страницы, по нему отбрасываются почти одинаковые страницы;
+     * {@code null} для слишком коротких текстов.
+     */
+    @Column(name = "simhash")
+    private Long simhash;
+
+    /**
+     * Число разных лемм страницы. Страница, у которой леммы есть, а строк index
+     * нет, при продолжении обхода считается недописанной; страница без лемм — нет.
+     */
+    @Column(name = "lemma_count")
+    private Integer lemmaCount;
+
+    public void setPath(String path) {
+        this.path = path;
+        this.pathHash = hashPath(path);
+    }
+
+    public static byte[] hashPath(String path) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(path.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
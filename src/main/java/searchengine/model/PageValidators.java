@@ -0,0 +1,12 @@
+package searchengine.model;
+
+/**
+ * Данные страницы, нужные для условного запроса при повторной индексации.
+ */
+public interface PageValidators {
+    Integer getId();
+    String getPath();
+    String getEtag();
+    String getLastModified();
+    String getContentHash();
+}
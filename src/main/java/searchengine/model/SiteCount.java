@@ -0,0 +1,9 @@
+package searchengine.model;
+
+/**
+ * Строка агрегатного запроса: сколько записей приходится на сайт.
+ */
+public interface SiteCount {
+    Integer getSiteId();
+    Long getCount();
+}
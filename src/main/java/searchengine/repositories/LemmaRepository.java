@@ -0,0 +1,14 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import searchengine.model.LemmaModel;
+import searchengine.model.SiteCount;
+
+import java.util.List;
+
+public interface LemmaRepository extends JpaRepository<LemmaModel, Integer> {
+
+    @Query("SELECT l.site.id AS siteId, COUNT(l) AS count FROM LemmaModel l GROUP BY l.site.id")
+    List<SiteCount> countLemmasBySite();
+}
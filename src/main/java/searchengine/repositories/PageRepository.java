@@ -1,11 +1,33 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import searchengine.model.PageFingerprint;
 import searchengine.model.PageModel;
+import searchengine.model.PageValidators;
+import searchengine.model.SiteCount;
 import searchengine.model.SiteModel;
 
+import java.util.List;
+
 public interface PageRepository extends JpaRepository<PageModel, Integer> {
-    void deleteBySite(SiteModel site);
-    Boolean existsByPath(String path);
-    PageModel findByPath(String path);
+    PageModel findBySiteAndPathHash(SiteModel site, byte[] pathHash);
+
+    default PageModel findBySiteAndPath(SiteModel site, String path) {
+        return findBySiteAndPathHash(site, PageModel.hashPath(path));
+    }
+
+    @Query("SELECT p.path FROM PageModel p WHERE p.site = :site")
+    List<String> findPathsBySite(@Param("site") SiteModel site);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.etag AS etag, p.lastModified AS lastModified, " +
+            "p.contentHash AS contentHash FROM PageModel p WHERE p.site = :site")
+    List<PageValidators> findValidatorsBySite(@Param("site") SiteModel site);
+
+    @Query("SELECT p.path AS path, p.simhash AS simhash FROM PageModel p WHERE p.site = :site AND p.simhash IS NOT NULL")
+    List<PageFingerprint> findFingerprintsBySite(@Param("site") SiteModel site);
+
+    @Query("SELECT p.site.id AS siteId, COUNT(p) AS count FROM PageModel p GROUP BY p.site.id")
+    List<SiteCount> countPagesBySite();
 }
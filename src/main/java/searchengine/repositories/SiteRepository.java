@@ -2,8 +2,12 @@ package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import searchengine.model.SiteModel;
+import searchengine.model.Status;
+
+import java.util.List;
 
 public interface SiteRepository extends JpaRepository<SiteModel, Integer> {
     SiteModel findByUrl(String url);
     void deleteByUrl(String url);
+    List<SiteModel> findAllByStatus(Status status);
 }
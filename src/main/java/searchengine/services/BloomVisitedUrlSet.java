@@ -0,0 +1,65 @@
+package searchengine.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума на битовом массиве без блокировок. Занимает около 1,8 байта
+ * на адрес при вероятности ложного срабатывания 0,1%. Ложное срабатывание
+ * означает, что страница не будет обойдена; при одновременном добавлении
+ * одного и того же адреса из двух потоков оба могут получить {@code true}.
+ */
+public class BloomVisitedUrlSet implements VisitedUrlSet {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomVisitedUrlSet(int expectedUrls, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / Math.max(1, expectedUrls) * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(String url) {
+        long hash = hash(url);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if (setBit((int) (bit >>> 6), 1L << bit)) {
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    private boolean setBit(int word, long mask) {
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    private static long hash(String url) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import lombok.Builder;
+import lombok.Getter;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.Site;
+import searchengine.model.PageValidators;
+import searchengine.model.SiteModel;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Состояние одной индексации сайта, общее для всех её задач.
+ */
+@Getter
+@Builder
+public class CrawlContext {
+    private final AtomicBoolean isIndexing;
+    private final SiteModel siteModel;
+    /**
+     * Настройки сайта из конфигурации; {@code null}, если сайта там нет.
+     */
+    private final Site site;
+    private final RobotsRules robotsRules;
+    private final VisitedUrlSet visitedUrls;
+    private final UrlNormalizer urlNormalizer;
+    /**
+     * Отпечатки сохранённых страниц; {@code null}, если поиск почти одинаковых страниц выключен.
+     */
+    private final NearDuplicateIndex nearDuplicates;
+    private final CrawlFrontier frontier;
+    /**
+     * Адреса уже сохранённых страниц, которые не нужно загружать повторно;
+     * заполняется, когда обход продолжается после перезапуска.
+     */
+    @Builder.Default
+    private final Set<String> savedPaths = Set.of();
+    /**
+     * Уже сохранённые страницы сайта по адресу; заполняется только при инкрементальной индексации.
+     */
+    @Builder.Default
+    private final Map<String, PageValidators> storedPages = Map.of();
+    private final PageWriter pageWriter;
+    private final LemmaFinder lemmaFinder;
+    private final CrawlerSettings crawlerSettings;
+    private final FetchExecutor fetchExecutor;
+    private final HostPolitenessScheduler politeness;
+    private final SitemapService sitemapService;
+    private final PageFetcher pageFetcher;
+    private final CrawlScheduler crawlScheduler;
+    private final SiteCrawlMetrics metrics;
+}
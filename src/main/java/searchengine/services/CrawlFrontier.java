@@ -0,0 +1,40 @@
+package searchengine.services;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь адресов, ожидающих обхода.
+ * <p>
+ * Взятый из очереди адрес считается обрабатываемым, пока для него не вызван
+ * {@link #done(FrontierUrl)}: контрольная точка не переходит через такие адреса,
+ * и после перезапуска они будут обойдены заново.
+ */
+public interface CrawlFrontier {
+
+    void add(Collection<String> urls, int depth);
+
+    /**
+     * Следующий адрес или {@code null}, если за {@code timeout} очередь так и осталась пустой.
+     */
+    FrontierUrl poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    void done(FrontierUrl url);
+
+    int size();
+
+    /**
+     * Сохраняет положение очереди, с которого можно продолжить обход.
+     */
+    void checkpoint();
+
+    /**
+     * Закрывает очередь, оставляя её для продолжения обхода.
+     */
+    void close();
+
+    /**
+     * Закрывает очередь и удаляет её данные: обход закончен.
+     */
+    void discard();
+}
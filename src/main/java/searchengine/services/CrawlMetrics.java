@@ -0,0 +1,45 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.dto.statistics.IndexingStatusResponse;
+import searchengine.dto.statistics.SiteIndexingStatus;
+import searchengine.model.SiteModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр метрик обходов: по одному {@link SiteCrawlMetrics} на сайт,
+ * последний обход сайта остаётся доступен в /api/indexingStatus.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CrawlMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SiteCrawlMetrics> sites = new ConcurrentHashMap<>();
+
+    public SiteCrawlMetrics start(SiteModel siteModel) {
+        SiteCrawlMetrics metrics = new SiteCrawlMetrics(meterRegistry, siteModel.getUrl());
+        SiteCrawlMetrics previous = sites.put(siteModel.getUrl(), metrics);
+        if (previous != null) {
+            previous.finish();
+        }
+        return metrics;
+    }
+
+    public IndexingStatusResponse getIndexingStatus(boolean indexing) {
+        IndexingStatusResponse response = new IndexingStatusResponse();
+        response.setResult(true);
+        response.setIndexing(indexing);
+        List<SiteIndexingStatus> statuses = new ArrayList<>();
+        sites.values().forEach(metrics -> statuses.add(metrics.toStatus()));
+        response.setSites(statuses);
+        return response;
+    }
+}
@@ -0,0 +1,667 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Entities;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.Site;
+import searchengine.model.PageModel;
+import searchengine.model.PageValidators;
+import searchengine.model.SiteModel;
+import searchengine.services.CrawlScheduler.Stage;
+import searchengine.services.PageFetcher.FetchResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход одного сайта конвейером из трёх стадий:
+ * <ol>
+ *     <li>загрузка страниц по HTTP (до {@code fetchThreads} задач одновременно или, в режиме
+ *     {@code VIRTUAL}, по виртуальному потоку на страницу через {@link FetchExecutor});</li>
+ *     <li>разбор HTML, извлечение ссылок и лемм (до {@code parseThreads} задач);</li>
+ *     <li>пакетная запись страниц и лемм в БД общим для всех сайтов {@link PageWriter}.</li>
+ * </ol>
+ * Задачи первых двух стадий выполняет общий для всех сайтов {@link CrawlScheduler}
+ * в полосе этого сайта, собственных рабочих потоков у обхода нет. Разбор не
+ * начинается, пока записи ждут больше {@code queueCapacity} страниц сайта, а новые
+ * загрузки — пока столько же страниц ждут разбора, поэтому медленная стадия притормаживает
+ * предыдущие, а не копит страницы в памяти. Обход заканчивается, когда все
+ * поставленные в очередь адреса прошли конвейер до конца.
+ * <p>
+ * Перед загрузкой адрес получает от {@link HostPolitenessScheduler} разрешённое
+ * время запроса и ждёт его в {@link DelayQueue}; заранее планируется не больше
+ * адресов, чем может загружаться одновременно.
+ * <p>
+ * При инкрементальной индексации в очередь сразу ставятся все известные страницы
+ * сайта. Ответ 304 или прежний хэш тела завершают обработку страницы без разбора
+ * и записи; изменившаяся страница заменяет прежнюю вместе с её леммами, а на
+ * ответ 404/410 сохранённая страница удаляется.
+ * <p>
+ * Очередь обхода — {@link CrawlFrontier} из контекста. Если в ней уже есть адреса
+ * (обход продолжается после перезапуска), стартовая страница заново не ставится,
+ * а адреса уже сохранённых страниц пропускаются без загрузки.
+ * <p>
+ * Параллельно с обходом читается sitemap сайта ({@link SitemapService}): новые
+ * адреса из него ставятся в очередь на глубине 1, пачками, начиная с недавно
+ * изменённых. При инкрементальной индексации страницы, у которых {@code <lastmod>}
+ * не новее сохранённого Last-Modified, не запрашиваются вовсе.
+ * <p>
+ * Ссылки со страниц глубже {@code maxDepth} не извлекаются, а всего в очередь
+ * ставится не больше {@code maxPagesPerSite} адресов, так что объём обхода
+ * и очереди заранее ограничен.
+ */
+@Slf4j
+public class CrawlPipeline {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long BACKLOG_WAIT_MS = 10;
+    private static final int SITEMAP_BATCH_SIZE = 1_000;
+    private static final Comparator<SitemapEntry> RECENTLY_MODIFIED_FIRST = Comparator.comparing(SitemapEntry::lastModified,
+            Comparator.nullsLast(Comparator.reverseOrder()));
+    private static final FetchedPage RETRY = new FetchedPage(null, 0, null, null, null, null, null, null);
+    /**
+     * Адрес передан {@link PageWriter} на удаление, обработку завершит его ответ.
+     */
+    private static final FetchedPage REMOVING = new FetchedPage(null, 0, null, null, null, null, null, null);
+
+    private final CrawlContext context;
+    private final CrawlerSettings settings;
+    private final SiteModel siteModel;
+    private final SiteCrawlMetrics metrics;
+    private final CrawlFrontier frontier;
+    private final DelayQueue<ScheduledUrl> scheduledUrls = new DelayQueue<>();
+    private final Semaphore scheduleSlots;
+    private final Map<String, Integer> retries = new ConcurrentHashMap<>();
+    /**
+     * Страницы, отданные {@link PageWriter} и ещё не записанные.
+     */
+    private final AtomicInteger unwritten = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxDepth;
+    private final int maxPages;
+    private final long maxBodySize;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private CrawlScheduler.Lane lane;
+    private volatile boolean done;
+    private String startUrl;
+    private volatile String startPageError;
+
+    public CrawlPipeline(CrawlContext context) {
+        this.context = context;
+        this.settings = context.getCrawlerSettings();
+        this.siteModel = context.getSiteModel();
+        this.metrics = context.getMetrics();
+        this.frontier = context.getFrontier();
+        Site site = context.getSite();
+        this.maxDepth = site != null && site.getMaxDepth() != null ? site.getMaxDepth() : settings.getMaxDepth();
+        this.maxPages = site != null && site.getMaxPages() != null ? site.getMaxPages() : settings.getMaxPagesPerSite();
+        this.maxBodySize = site != null && site.getMaxBodySize() != null ? site.getMaxBodySize() : settings.getMaxBodySize();
+        this.scheduleSlots = new Semaphore(context.getFetchExecutor().isEnabled()
+                ? context.getFetchExecutor().fetchesPerSite() : settings.getFetchThreads());
+    }
+
+    /**
+     * Обходит сайт, начиная с {@code startUrl}, и возвращает управление, когда обход
+     * закончен или остановлен пользователем.
+     *
+     * @return {@code true}, если обойдены все адреса очереди
+     */
+    public boolean run(String startUrl) {
+        this.startUrl = startUrl;
+        configurePoliteness(startUrl);
+        lane = registerLane();
+        registerQueueGauges();
+        int resumed = frontier.size();
+        if (resumed > 0) {
+            pending.addAndGet(resumed);
+            admitted.addAndGet(resumed + context.getSavedPaths().size());
+            log.info("Обход продолжается: {} адресов в очереди для сайта: {}", resumed, siteModel.getUrl());
+        } else {
+            enqueue(List.of(startUrl), 0);
+        }
+        boolean seedFromSitemaps = resumed == 0 && settings.isUseSitemaps();
+        if (resumed == 0 && !seedFromSitemaps) {
+            enqueueStoredPages(startUrl, Set.of());
+        }
+        // потоки сайта только планируют: задачи конвейера выполняет общий пул
+        ExecutorService coordinators = Executors.newFixedThreadPool(seedFromSitemaps ? 3 : 2);
+        if (seedFromSitemaps) {
+            pending.incrementAndGet();
+            coordinators.execute(() -> seedFromSitemaps(startUrl));
+        }
+        coordinators.execute(this::scheduleLoop);
+        coordinators.execute(this::dispatchLoop);
+        long nextCheckpoint = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getFrontierCheckpointInterval());
+        try {
+            while (!finished.await(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (!context.getIsIndexing().get()) {
+                    log.info("Индексация остановлена для сайта: {}", siteModel.getUrl());
+                    break;
+                }
+                if (System.nanoTime() >= nextCheckpoint) {
+                    frontier.checkpoint();
+                    nextCheckpoint = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getFrontierCheckpointInterval());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done = true;
+            coordinators.shutdown();
+            awaitTermination(coordinators);
+            closeLane();
+        }
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * @return почему не загрузилась главная страница, или {@code null}, если она загружена
+     */
+    public String getStartPageError() {
+        return startPageError;
+    }
+
+    private CrawlScheduler.Lane registerLane() {
+        Site site = context.getSite();
+        int weight = site != null && site.getCrawlWeight() != null ? site.getCrawlWeight() : 1;
+        int maxWorkers = site != null && site.getMaxWorkers() != null ? site.getMaxWorkers() : settings.getMaxWorkersPerSite();
+        return context.getCrawlScheduler().register(siteModel.getUrl(), weight, maxWorkers)
+                .limit(Stage.FETCH, settings.getFetchThreads(), null)
+                .limit(Stage.PARSE, settings.getParseThreads(), () -> unwritten.get() < settings.getQueueCapacity());
+    }
+
+    /**
+     * Снимает полосу сайта с планировщика, дождавшись выполняющихся задач,
+     * и ждёт, пока в БД допишутся уже разобранные страницы.
+     */
+    private void closeLane() {
+        try {
+            lane.close();
+            context.getPageWriter().flush().get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Ошибка записи страниц сайта: {} {}", siteModel.getUrl(), e.getMessage());
+        }
+    }
+
+    private void configurePoliteness(String startUrl) {
+        Site site = context.getSite();
+        long delay = site != null && site.getCrawlDelay() != null ? site.getCrawlDelay() : settings.getCrawlDelay();
+        int burst = site != null && site.getCrawlBurst() != null ? site.getCrawlBurst() : settings.getCrawlBurst();
+        delay = Math.max(delay, context.getRobotsRules().getCrawlDelayMs());
+        context.getPoliteness().configure(startUrl, delay, burst);
+    }
+
+    private void registerQueueGauges() {
+        metrics.registerQueue("frontier", frontier::size);
+        metrics.registerQueue("scheduled", scheduledUrls::size);
+        metrics.registerQueue("fetched", () -> lane.queued(Stage.PARSE));
+        metrics.registerQueue("parsed", unwritten::get);
+        metrics.registerQueue("pending", pending::get);
+    }
+
+    private void enqueue(List<String> urls, int depth) {
+        List<String> accepted = admit(urls);
+        if (accepted.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(accepted.size());
+        frontier.add(accepted, depth);
+    }
+
+    /**
+     * Отбирает из {@code urls} столько адресов, сколько ещё помещается в {@code maxPages}.
+     */
+    private List<String> admit(List<String> urls) {
+        if (maxPages <= 0) {
+            return urls;
+        }
+        while (true) {
+            int current = admitted.get();
+            int allowed = Math.min(urls.size(), maxPages - current);
+            if (allowed <= 0) {
+                return List.of();
+            }
+            if (admitted.compareAndSet(current, current + allowed)) {
+                if (current + allowed == maxPages) {
+                    log.info("Достигнут предел страниц {} для сайта: {}", maxPages, siteModel.getUrl());
+                }
+                return allowed == urls.size() ? urls : urls.subList(0, allowed);
+            }
+        }
+    }
+
+    private void complete(FrontierUrl url) {
+        frontier.done(url);
+        release();
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Ставит в очередь новые адреса из sitemap, а затем — при инкрементальной
+     * индексации — сохранённые страницы, которые могли измениться. Пока задача
+     * идёт, обход не считается законченным.
+     */
+    private void seedFromSitemaps(String startUrl) {
+        try {
+            Set<String> unchanged = new HashSet<>();
+            List<SitemapEntry> batch = new ArrayList<>(SITEMAP_BATCH_SIZE);
+            context.getSitemapService().read(siteModel.getUrl(), context.getRobotsRules().getSitemaps(), entry -> {
+                String url = context.getUrlNormalizer().normalize(entry.url());
+                if (url == null || !isAllowedByRobots(url)) {
+                    return !done;
+                }
+                PageValidators stored = context.getStoredPages().get(url);
+                if (stored != null) {
+                    if (isUnchanged(stored, entry)) {
+                        unchanged.add(url);
+                    }
+                } else if (context.getVisitedUrls().add(url)) {
+                    batch.add(url.equals(entry.url()) ? entry : new SitemapEntry(url, entry.lastModified()));
+                    if (batch.size() >= SITEMAP_BATCH_SIZE) {
+                        enqueueSitemapBatch(batch);
+                    }
+                }
+                return !done;
+            });
+            enqueueSitemapBatch(batch);
+            if (!unchanged.isEmpty()) {
+                log.info("По sitemap не изменились страниц: {} для сайта: {}", unchanged.size(), siteModel.getUrl());
+            }
+            enqueueStoredPages(startUrl, unchanged);
+        } catch (RuntimeException e) {
+            log.error("Ошибка чтения sitemap сайта: {} {}", siteModel.getUrl(), e.getMessage());
+        } finally {
+            release();
+        }
+    }
+
+    private void enqueueSitemapBatch(List<SitemapEntry> batch) {
+        batch.sort(RECENTLY_MODIFIED_FIRST);
+        enqueue(batch.stream().map(SitemapEntry::url).toList(), 1);
+        batch.clear();
+    }
+
+    private void enqueueStoredPages(String startUrl, Set<String> unchanged) {
+        List<String> storedUrls = new ArrayList<>();
+        for (String url : context.getStoredPages().keySet()) {
+            if (!url.equals(startUrl) && !unchanged.contains(url)) {
+                storedUrls.add(url);
+            }
+        }
+        enqueue(storedUrls, 1);
+    }
+
+    /**
+     * Страница не менялась, если {@code <lastmod>} из sitemap не новее Last-Modified прошлой загрузки.
+     */
+    private static boolean isUnchanged(PageValidators stored, SitemapEntry entry) {
+        if (entry.lastModified() == null || stored.getLastModified() == null) {
+            return false;
+        }
+        try {
+            Instant storedLastModified = ZonedDateTime.parse(stored.getLastModified(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !entry.lastModified().isAfter(storedLastModified);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Берёт адреса из очереди обхода по мере освобождения мест для загрузки
+     * и назначает каждому время запроса с учётом вежливости к хосту.
+     */
+    private void scheduleLoop() {
+        try {
+            while (!done) {
+                if (!scheduleSlots.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                FrontierUrl url = frontier.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (url == null || context.getSavedPaths().contains(url.url())) {
+                    scheduleSlots.release();
+                    if (url != null) {
+                        complete(url);
+                    }
+                    continue;
+                }
+                long delay = context.getPoliteness().reserve(url.url());
+                scheduledUrls.put(new ScheduledUrl(url, System.nanoTime() + delay));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Передаёт на загрузку адреса, время запроса которых наступило: задачей
+     * в полосу сайта или, в режиме VIRTUAL, виртуальному потоку {@link FetchExecutor}.
+     * Место в {@code scheduleSlots} освобождается, когда загрузка закончена.
+     */
+    private void dispatchLoop() {
+        boolean virtualFetch = context.getFetchExecutor().isEnabled();
+        try {
+            while (!done) {
+                if (lane.queued(Stage.PARSE) >= settings.getQueueCapacity()) {
+                    Thread.sleep(BACKLOG_WAIT_MS);
+                    continue;
+                }
+                ScheduledUrl scheduled = scheduledUrls.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (scheduled == null) {
+                    continue;
+                }
+                FrontierUrl url = scheduled.url();
+                Runnable task = () -> {
+                    try {
+                        fetchAndHandOff(url);
+                    } finally {
+                        scheduleSlots.release();
+                    }
+                };
+                if (virtualFetch) {
+                    context.getFetchExecutor().submit(url.url(), task);
+                } else {
+                    lane.submit(Stage.FETCH, task);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fetchAndHandOff(FrontierUrl url) {
+        FetchedPage page = fetch(url);
+        if (page == RETRY || page == REMOVING) {
+            return;
+        }
+        if (page == null) {
+            complete(url);
+            return;
+        }
+        lane.submit(Stage.PARSE, () -> parseAndHandOff(page));
+    }
+
+    private void parseAndHandOff(FetchedPage page) {
+        ParsedPage parsedPage = parse(page);
+        if (parsedPage == null) {
+            complete(page.source());
+            return;
+        }
+        unwritten.incrementAndGet();
+        long startNanos = System.nanoTime();
+        context.getPageWriter().write(new PageWriter.PageWrite(parsedPage.pageModel(), parsedPage.lemmas(),
+                parsedPage.replacedPageId(), result -> written(parsedPage.source(), result, startNanos)));
+    }
+
+    /**
+     * Вызывается потоком {@link PageWriter}, когда страница записана, пропущена или не записалась.
+     */
+    private void written(FrontierUrl source, PageWriter.Result result, long startNanos) {
+        if (unwritten.decrementAndGet() == settings.getQueueCapacity() - 1) {
+            lane.readyChanged();
+        }
+        if (result == PageWriter.Result.SAVED) {
+            metrics.pagesSaved(1, startNanos);
+        } else if (result == PageWriter.Result.FAILED) {
+            metrics.error("persist");
+        }
+        complete(source);
+    }
+
+    private FetchedPage fetch(FrontierUrl source) {
+        String url = source.url();
+        long startNanos = System.nanoTime();
+        long bytes = -1;
+        metrics.fetchStarted();
+        try {
+            PageValidators stored = context.getStoredPages().get(url);
+            FetchResponse response = context.getPageFetcher().fetch(url, stored, maxBodySize);
+            int code = response.code();
+            if (code == 304) {
+                context.getPoliteness().onSuccess(url);
+                log.debug("Страница не изменилась: {}", url);
+                return null;
+            }
+            if (code == 429 || code == 503) {
+                metrics.error("http_" + code);
+                context.getPoliteness().onThrottled(url, retryAfterMs(response.retryAfter()));
+                return retry(source, code);
+            }
+            if ((code == 404 || code == 410) && stored != null) {
+                context.getPoliteness().onSuccess(url);
+                startPageFailed(url, "код ответа " + code);
+                return remove(source, stored.getId(), code);
+            }
+            if (code >= 400) {
+                throw new HttpStatusException("HTTP error fetching URL", code, url);
+            }
+            context.getPoliteness().onSuccess(url);
+            log.debug("Тип контента для url: {} {}", url, response.contentType());
+            if (response.body() == null) {
+                log.warn("Неподдерживаемый тип контента для url: {} {}", url, response.contentType());
+                return null;
+            }
+            byte[] body = response.body();
+            bytes = body.length;
+            String contentHash = sha256(body);
+            if (stored != null && contentHash.equals(stored.getContentHash())) {
+                log.debug("Содержимое страницы не изменилось: {}", url);
+                return null;
+            }
+            return new FetchedPage(source, code, body, response.charset(), response.etag(),
+                    response.lastModified(), contentHash, stored == null ? null : stored.getId());
+        } catch (IOException e) {
+            // ошибка одной страницы не роняет сайт: она уходит в last_error, статус остаётся INDEXING
+            metrics.error(e instanceof HttpStatusException statusException
+                    ? "http_" + statusException.getStatusCode() : e.getClass().getSimpleName(), url + " " + e.getMessage());
+            log.error("Error URL: {} {}", url, e.getMessage());
+            startPageFailed(url, e instanceof HttpStatusException statusException
+                    ? "код ответа " + statusException.getStatusCode() : e.getMessage());
+            return null;
+        } finally {
+            metrics.fetchFinished(startNanos, bytes);
+        }
+    }
+
+    /**
+     * Возвращает адрес в очередь обхода после ответа 429/503, пока не исчерпаны попытки.
+     */
+    private FetchedPage retry(FrontierUrl source, int code) {
+        String url = source.url();
+        int attempt = retries.merge(url, 1, Integer::sum);
+        if (attempt > settings.getMaxRetries()) {
+            log.error("Сайт отвечает {} для url: {}, попытки исчерпаны", code, url);
+            retries.remove(url);
+            startPageFailed(url, "код ответа " + code);
+            return null;
+        }
+        log.warn("Сайт отвечает {} для url: {}, попытка {}", code, url, attempt);
+        frontier.add(List.of(url), source.depth());
+        frontier.done(source);
+        return RETRY;
+    }
+
+    /**
+     * Сохранённая страница пропала с сайта: она удаляется вместе с леммами,
+     * чтобы не находиться поиском.
+     */
+    private FetchedPage remove(FrontierUrl source, int pageId, int code) {
+        log.info("Страница больше не существует, код {}: {}", code, source.url());
+        unwritten.incrementAndGet();
+        long startNanos = System.nanoTime();
+        context.getPageWriter().remove(new PageWriter.PageRemoval(siteModel.getId(), pageId,
+                result -> written(source, result, startNanos)));
+        return REMOVING;
+    }
+
+    private void startPageFailed(String url, String error) {
+        if (url.equals(startUrl)) {
+            startPageError = error;
+        }
+    }
+
+    static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long retryAfterMs(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private ParsedPage parse(FetchedPage page) {
+        try {
+            Document document = Jsoup.parse(new ByteArrayInputStream(page.body()), page.charset(), page.url());
+            List<String> links = new ArrayList<>();
+            if (maxDepth <= 0 || page.source().depth() < maxDepth) {
+                for (Element element : document.select("a[href]")) {
+                    String url = context.getUrlNormalizer().normalize(element.absUrl("href"));
+                    if (url != null && isAllowedByRobots(url) && context.getVisitedUrls().add(url)) {
+                        links.add(url);
+                        log.debug("Добавлен в очередь URL: {}", url);
+                    }
+                }
+            }
+            enqueue(links, page.source().depth() + 1);
+            String text = document.text();
+            Long simhash = NearDuplicateIndex.fingerprint(document);
+            if (isNearDuplicate(page, simhash)) {
+                return null;
+            }
+            Map<String, Integer> lemmas = context.getLemmaFinder().collectLemmas(text);
+            PageModel pageModel = createPageModel(page, storedContent(document, settings.getContentStorage()));
+            pageModel.setSimhash(simhash);
+            pageModel.setLemmaCount(lemmas.size());
+            return new ParsedPage(page.source(), pageModel, lemmas, page.replacedPageId());
+        } catch (IOException | RuntimeException e) {
+            metrics.error("parse", page.url() + " " + e.getMessage());
+            log.error("Ошибка разбора страницы: {} {}", page.url(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Новая страница, почти совпадающая по основному тексту с уже сохранённой,
+     * не сохраняется, хотя ссылки с неё обходятся. Изменившиеся страницы при повторной индексации
+     * не проверяются: их прежняя версия уже в индексе.
+     */
+    private boolean isNearDuplicate(FetchedPage page, Long simhash) {
+        NearDuplicateIndex nearDuplicates = context.getNearDuplicates();
+        if (nearDuplicates == null || simhash == null) {
+            return false;
+        }
+        if (page.replacedPageId() != null) {
+            nearDuplicates.add(page.url(), simhash);
+            return false;
+        }
+        String original = nearDuplicates.findOrAdd(page.url(), simhash);
+        if (original == null) {
+            return false;
+        }
+        metrics.duplicate();
+        log.info("Страница {} почти совпадает с {}, не сохраняется", page.url(), original);
+        return true;
+    }
+
+    /**
+     * В режиме TEXT от страницы остаётся минимальный HTML-документ из заголовка
+     * и текста: поиск читает его так же, как полную страницу.
+     */
+    static String storedContent(Document document, CrawlerSettings.ContentStorage storage) {
+        if (storage == CrawlerSettings.ContentStorage.HTML) {
+            return document.html();
+        }
+        return "<title>" + Entities.escape(document.title()) + "</title>" + Entities.escape(document.body().text());
+    }
+
+    private boolean isAllowedByRobots(String url) {
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return context.getRobotsRules().isAllowed(uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private PageModel createPageModel(FetchedPage page, String content) {
+        PageModel pageModel = new PageModel();
+        pageModel.setCode(page.code());
+        pageModel.setContent(content);
+        pageModel.setPath(context.getUrlNormalizer().toPath(page.url()));
+        pageModel.setSite(siteModel);
+        pageModel.setEtag(page.etag());
+        pageModel.setLastModified(page.lastModified());
+        pageModel.setContentHash(page.contentHash());
+        return pageModel;
+    }
+
+    private void awaitTermination(ExecutorService workers) {
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param replacedPageId id прежней версии страницы, если она изменилась с прошлой индексации
+     */
+    private record FetchedPage(FrontierUrl source, int code, byte[] body, String charset, String etag,
+                               String lastModified, String contentHash, Integer replacedPageId) {
+
+        private String url() {
+            return source.url();
+        }
+    }
+
+    private record ScheduledUrl(FrontierUrl url, long releaseAtNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(releaseAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(releaseAtNanos, ((ScheduledUrl) other).releaseAtNanos);
+        }
+    }
+
+    private record ParsedPage(FrontierUrl source, PageModel pageModel, Map<String, Integer> lemmas, Integer replacedPageId) {
+    }
+}
@@ -0,0 +1,260 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Общий для всех сайтов пул потоков обхода ({@code crawl-workers} потоков).
+ * Запись в БД идёт мимо него, через {@link PageWriter}.
+ * <p>
+ * Каждый сайт получает свою полосу ({@link Lane}) с очередями задач по стадиям.
+ * Свободный поток берёт задачу из полосы с наименьшим «пройденным путём»:
+ * каждая выполненная задача продвигает полосу на {@code 1 / weight}, поэтому
+ * сайты получают потоки пропорционально весу, и большой сайт не вытесняет
+ * маленькие (stride scheduling). Полоса, простоявшая без задач, не копит
+ * преимущество: при возобновлении её путь подтягивается к текущему.
+ * <p>
+ * Внутри полосы сначала выполняются задачи более поздних стадий, так что
+ * уже загруженные страницы разбираются раньше, чем начинаются новые загрузки.
+ * Для каждой стадии задан предел одновременных задач, для всей полосы —
+ * {@code maxWorkers}, а стадия с условием готовности не запускается, пока
+ * условие не выполнено (следующая стадия не успевает).
+ */
+@Slf4j
+@Component
+public class CrawlScheduler {
+
+    public enum Stage {
+        FETCH, PARSE
+    }
+
+    private static final Stage[] PRIORITY = {Stage.PARSE, Stage.FETCH};
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final int workerCount;
+    private final ExecutorService workers;
+    private double virtualTime;
+    private boolean shutdown;
+
+    @Autowired
+    public CrawlScheduler(CrawlerSettings crawlerSettings) {
+        int configured = crawlerSettings.getCrawlWorkers();
+        this.workerCount = configured > 0 ? configured
+                : crawlerSettings.getFetchThreads() + crawlerSettings.getParseThreads();
+        this.workers = Executors.newFixedThreadPool(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workerLoop);
+        }
+        log.info("Потоков обхода: {}", workerCount);
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Заводит полосу сайта.
+     *
+     * @param weight     доля потоков относительно других сайтов
+     * @param maxWorkers сколько потоков полоса может занимать одновременно
+     */
+    public synchronized Lane register(String name, int weight, int maxWorkers) {
+        Lane lane = new Lane(name, Math.max(1, weight), maxWorkers > 0 ? maxWorkers : workerCount);
+        lane.pass = virtualTime;
+        lanes.add(lane);
+        return lane;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        workers.shutdownNow();
+    }
+
+    private void workerLoop() {
+        while (true) {
+            Task task;
+            try {
+                task = next();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == null) {
+                return;
+            }
+            try {
+                task.runnable().run();
+            } catch (RuntimeException e) {
+                log.error("Ошибка задачи обхода {} ({}): {}", task.lane().name, task.stage(), e.getMessage(), e);
+            } finally {
+                finished(task);
+            }
+        }
+    }
+
+    private synchronized Task next() throws InterruptedException {
+        while (!shutdown) {
+            Lane selected = null;
+            Stage stage = null;
+            for (Lane lane : lanes) {
+                if (selected != null && lane.pass >= selected.pass) {
+                    continue;
+                }
+                Stage ready = lane.readyStage();
+                if (ready != null) {
+                    selected = lane;
+                    stage = ready;
+                }
+            }
+            if (selected != null) {
+                virtualTime = selected.pass;
+                selected.pass += 1.0 / selected.weight;
+                selected.running++;
+                selected.stageRunning.merge(stage, 1, Integer::sum);
+                return new Task(selected, stage, selected.queues.get(stage).poll());
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void finished(Task task) {
+        Lane lane = task.lane();
+        lane.running--;
+        lane.stageRunning.merge(task.stage(), -1, Integer::sum);
+        notifyAll();
+    }
+
+    private record Task(Lane lane, Stage stage, Runnable runnable) {
+    }
+
+    /**
+     * Очереди задач одного сайта в общем планировщике.
+     */
+    public class Lane {
+        private final String name;
+        private final int weight;
+        private final int maxWorkers;
+        private final Map<Stage, ArrayDeque<Runnable>> queues = new EnumMap<>(Stage.class);
+        private final Map<Stage, Integer> stageLimits = new EnumMap<>(Stage.class);
+        private final Map<Stage, BooleanSupplier> stageReady = new EnumMap<>(Stage.class);
+        private final Map<Stage, Integer> stageRunning = new EnumMap<>(Stage.class);
+        private double pass;
+        private int running;
+        private boolean closed;
+
+        private Lane(String name, int weight, int maxWorkers) {
+            this.name = name;
+            this.weight = weight;
+            this.maxWorkers = maxWorkers;
+            for (Stage stage : Stage.values()) {
+                queues.put(stage, new ArrayDeque<>());
+                stageRunning.put(stage, 0);
+            }
+        }
+
+        /**
+         * Ограничивает число одновременных задач стадии; {@code ready}, если задан,
+         * должен вернуть {@code true}, чтобы задача стадии могла начаться.
+         */
+        public Lane limit(Stage stage, int maxRunning, BooleanSupplier ready) {
+            synchronized (CrawlScheduler.this) {
+                stageLimits.put(stage, Math.max(1, maxRunning));
+                if (ready != null) {
+                    stageReady.put(stage, ready);
+                }
+            }
+            return this;
+        }
+
+        public void submit(Stage stage, Runnable task) {
+            synchronized (CrawlScheduler.this) {
+                if (closed) {
+                    return;
+                }
+                ArrayDeque<Runnable> queue = queues.get(stage);
+                if (isIdle()) {
+                    pass = Math.max(pass, virtualTime);
+                }
+                queue.add(task);
+                CrawlScheduler.this.notify();
+            }
+        }
+
+        /**
+         * Будит свободные потоки: условие готовности стадии могло стать истинным
+         * не по окончании задачи этой полосы, а извне.
+         */
+        public void readyChanged() {
+            synchronized (CrawlScheduler.this) {
+                CrawlScheduler.this.notifyAll();
+            }
+        }
+
+        public int queued(Stage stage) {
+            synchronized (CrawlScheduler.this) {
+                return queues.get(stage).size();
+            }
+        }
+
+        /**
+         * Отбрасывает задачи в очередях, ждёт окончания выполняющихся и убирает полосу.
+         */
+        public void close() throws InterruptedException {
+            synchronized (CrawlScheduler.this) {
+                closed = true;
+                queues.values().forEach(ArrayDeque::clear);
+                while (running > 0) {
+                    CrawlScheduler.this.wait();
+                }
+                lanes.remove(this);
+                CrawlScheduler.this.notifyAll();
+            }
+        }
+
+        private boolean isIdle() {
+            if (running > 0) {
+                return false;
+            }
+            for (ArrayDeque<Runnable> queue : queues.values()) {
+                if (!queue.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Stage readyStage() {
+            if (running >= maxWorkers) {
+                return null;
+            }
+            for (Stage stage : PRIORITY) {
+                if (queues.get(stage).isEmpty()
+                        || stageRunning.get(stage) >= stageLimits.getOrDefault(stage, maxWorkers)) {
+                    continue;
+                }
+                BooleanSupplier ready = stageReady.get(stage);
+                if (ready == null || ready.getAsBoolean()) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Очередь обхода в файле {@code frontier.log}: адреса только дописываются в конец
+ * записями {@code [глубина][длина][адрес в UTF-8]} и читаются по порядку, так что
+ * в памяти держится лишь буфер чтения, а не весь фронт обхода.
+ * <p>
+ * Файл {@code checkpoint} хранит смещение самой ранней записи, обработка которой
+ * ещё не закончена. После перезапуска чтение продолжается с него; записи до него
+ * уже обойдены, а весь журнал целиком — это все адреса, когда-либо поставленные
+ * в очередь, из него восстанавливается множество посещённых адресов.
+ * <p>
+ * Запись идёт прямо в канал файла, без буфера в куче: после падения JVM
+ * в журнале остаётся всё, что было добавлено. Недописанная последняя запись
+ * при открытии отбрасывается.
+ */
+@Slf4j
+public class DiskFrontier implements CrawlFrontier {
+
+    private static final String LOG_FILE = "frontier.log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_URL_BYTES = 1 << 20;
+
+    private final Path dir;
+    private final FileChannel channel;
+    private final RecordReader reader;
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    /**
+     * Контрольная точка, с которой очередь открыта: записи до неё уже обработаны.
+     */
+    private final long resumedFrom;
+    private long writeOffset;
+    private int size;
+    private boolean closed;
+
+    private DiskFrontier(Path dir) throws IOException {
+        this.dir = dir;
+        this.channel = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        long checkpoint = Math.min(readCheckpoint(), fileSize);
+        RecordReader scanner = new RecordReader(checkpoint);
+        while (scanner.next(fileSize) != null) {
+            size++;
+        }
+        writeOffset = scanner.position;
+        if (writeOffset < fileSize) {
+            log.warn("Отброшена недописанная запись очереди обхода: {} байт в {}", fileSize - writeOffset, dir);
+            channel.truncate(writeOffset);
+        }
+        reader = new RecordReader(checkpoint);
+        resumedFrom = checkpoint;
+    }
+
+    /**
+     * Открывает очередь в каталоге {@code dir}. Без {@code resume} прежние данные удаляются.
+     */
+    public static DiskFrontier open(Path dir, boolean resume) throws IOException {
+        if (!resume) {
+            delete(dir);
+        }
+        Files.createDirectories(dir);
+        DiskFrontier frontier = new DiskFrontier(dir);
+        if (resume) {
+            log.info("Очередь обхода восстановлена из {}: {} адресов", dir, frontier.size);
+        }
+        return frontier;
+    }
+
+    /**
+     * Есть ли в каталоге очередь, с которой можно продолжить обход.
+     */
+    public static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(CHECKPOINT_FILE)) && Files.exists(dir.resolve(LOG_FILE));
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Передаёт {@code action} все адреса журнала, включая уже обойдённые.
+     */
+    public synchronized void forEachUrl(Consumer<String> action) {
+        try {
+            RecordReader scanner = new RecordReader(0);
+            FrontierUrl url;
+            while ((url = scanner.next(writeOffset)) != null) {
+                action.accept(url.url());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Снова ставит в очередь адреса из {@code urls}, обработка которых до контрольной
+     * точки считалась законченной, с их прежней глубиной. Адреса после контрольной
+     * точки и так будут обойдены повторно.
+     *
+     * @return сколько адресов поставлено в очередь
+     */
+    public synchronized int requeue(Set<String> urls) {
+        if (urls.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, List<String>> byDepth = new TreeMap<>();
+        try {
+            RecordReader scanner = new RecordReader(0);
+            FrontierUrl url;
+            while ((url = scanner.next(resumedFrom)) != null) {
+                if (urls.contains(url.url())) {
+                    byDepth.computeIfAbsent(url.depth(), depth -> new ArrayList<>()).add(url.url());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byDepth.forEach((depth, list) -> add(list, depth));
+        return byDepth.values().stream().mapToInt(List::size).sum();
+    }
+
+    @Override
+    public synchronized void add(Collection<String> urls, int depth) {
+        if (urls.isEmpty() || closed) {
+            return;
+        }
+        List<byte[]> encoded = new ArrayList<>(urls.size());
+        int length = 0;
+        for (String url : urls) {
+            byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            length += HEADER_SIZE + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] bytes : encoded) {
+            buffer.putInt(depth).putInt(bytes.length).put(bytes);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                writeOffset += channel.write(buffer, writeOffset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size += encoded.size();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized FrontierUrl poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (size == 0 && !closed) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        if (closed) {
+            return null;
+        }
+        try {
+            FrontierUrl url = reader.next(writeOffset);
+            if (url == null) {
+                return null;
+            }
+            size--;
+            inFlight.add(url.offset());
+            return url;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void done(FrontierUrl url) {
+        inFlight.remove(url.offset());
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void checkpoint() {
+        if (closed) {
+            return;
+        }
+        long offset = inFlight.isEmpty() ? reader.position : inFlight.first();
+        try {
+            channel.force(false);
+            Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(tmp, Long.toString(offset));
+            Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Контрольная точка очереди обхода {}: смещение {}, в очереди {}", dir, offset, size);
+        } catch (IOException e) {
+            log.error("Не удалось сохранить контрольную точку очереди обхода {}: {}", dir, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        checkpoint();
+        closeChannel();
+    }
+
+    @Override
+    public synchronized void discard() {
+        closeChannel();
+        try {
+            delete(dir);
+        } catch (IOException e) {
+            log.error("Не удалось удалить очередь обхода {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        notifyAll();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Ошибка закрытия очереди обхода {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(Files.readString(checkpoint).trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Повреждена контрольная точка очереди обхода {}, чтение с начала", dir);
+            return 0;
+        }
+    }
+
+    /**
+     * Последовательное чтение записей журнала через собственный буфер.
+     */
+    private class RecordReader {
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).limit(0);
+        /**
+         * Смещение в файле первого непрочитанного байта буфера.
+         */
+        private long position;
+
+        private RecordReader(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Следующая запись или {@code null}, если до {@code end} нет целой записи.
+         */
+        private FrontierUrl next(long end) throws IOException {
+            if (!fill(HEADER_SIZE, end)) {
+                return null;
+            }
+            int depth = buffer.getInt(buffer.position());
+            int length = buffer.getInt(buffer.position() + Integer.BYTES);
+            if (length < 0 || length > MAX_URL_BYTES || !fill(HEADER_SIZE + length, end)) {
+                return null;
+            }
+            long offset = position;
+            buffer.position(buffer.position() + HEADER_SIZE);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            position += HEADER_SIZE + length;
+            return new FrontierUrl(new String(bytes, StandardCharsets.UTF_8), depth, offset);
+        }
+
+        private boolean fill(int bytes, long end) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (position + bytes > end) {
+                return false;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            long fileOffset = position + buffer.position();
+            buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + (end - fileOffset)));
+            while (buffer.position() < bytes) {
+                int read = channel.read(buffer, fileOffset);
+                if (read <= 0) {
+                    break;
+                }
+                fileOffset += read;
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+    }
+}
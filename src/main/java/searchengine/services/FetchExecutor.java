@@ -0,0 +1,127 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Общий для всех сайтов исполнитель загрузок в режиме {@code fetch-mode: VIRTUAL}.
+ * Каждая загрузка получает собственный виртуальный поток, поэтому ожидание сети
+ * и паузы не занимают потоки ОС. Число одновременных загрузок ограничено
+ * семафорами: общим и отдельным для каждого хоста. Обход сайта планирует не больше
+ * {@link #fetchesPerSite()} загрузок сразу, так что общий предел достигается,
+ * только если сайтов не меньше {@code maxConcurrentFetches / maxFetchesPerHost}.
+ * <p>
+ * Виртуальные потоки появились в Java 21, проект собирается под Java 17,
+ * поэтому фабрика ищется через reflection; на старой JVM используется
+ * обычный кэширующий пул с теми же ограничениями.
+ */
+@Slf4j
+@Component
+public class FetchExecutor {
+
+    private final CrawlerSettings crawlerSettings;
+    private final Semaphore globalPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+
+    public FetchExecutor(CrawlerSettings crawlerSettings, SitesList sitesList) {
+        this.crawlerSettings = crawlerSettings;
+        if (crawlerSettings.getMaxConcurrentFetches() < 1 || crawlerSettings.getMaxFetchesPerHost() < 1) {
+            throw new IllegalArgumentException("max-concurrent-fetches и max-fetches-per-host должны быть больше 0");
+        }
+        this.globalPermits = new Semaphore(crawlerSettings.getMaxConcurrentFetches());
+        if (isEnabled()) {
+            int sites = sitesList.getSites() == null ? 0 : sitesList.getSites().size();
+            long reachable = (long) sites * crawlerSettings.getMaxFetchesPerHost();
+            if (reachable < crawlerSettings.getMaxConcurrentFetches()) {
+                log.warn("max-concurrent-fetches: {} недостижим: сайтов {} по max-fetches-per-host: {}, "
+                                + "одновременно пойдёт не больше {} загрузок",
+                        crawlerSettings.getMaxConcurrentFetches(), sites, crawlerSettings.getMaxFetchesPerHost(), reachable);
+            }
+        }
+    }
+
+    /**
+     * Сколько загрузок одного сайта планируется одновременно. Сайт — один хост,
+     * поэтому больше {@code maxFetchesPerHost} не бывает, а общий предел
+     * {@code maxConcurrentFetches} делится между всеми сайтами.
+     */
+    public int fetchesPerSite() {
+        return Math.min(crawlerSettings.getMaxFetchesPerHost(), crawlerSettings.getMaxConcurrentFetches());
+    }
+
+    public boolean isEnabled() {
+        return crawlerSettings.getFetchMode() == CrawlerSettings.FetchMode.VIRTUAL;
+    }
+
+    /**
+     * Запускает загрузку {@code url}. Если общий лимит исчерпан, вызывающий поток ждёт.
+     */
+    public void submit(String url, Runnable fetch) throws InterruptedException {
+        globalPermits.acquire();
+        try {
+            executor().execute(() -> {
+                try {
+                    runWithHostPermit(url, fetch);
+                } finally {
+                    globalPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            globalPermits.release();
+            throw e;
+        }
+    }
+
+    private void runWithHostPermit(String url, Runnable fetch) {
+        Semaphore permits = hostPermits.computeIfAbsent(HostPolitenessScheduler.host(url), host -> new Semaphore(crawlerSettings.getMaxFetchesPerHost()));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            fetch.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = createExecutor();
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.info("Загрузка страниц выполняется в виртуальных потоках");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Виртуальные потоки недоступны в Java {}, загрузка пойдёт в обычных потоках",
+                    Runtime.version().feature());
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.services;
+
+/**
+ * Адрес из очереди обхода.
+ *
+ * @param depth  число переходов по ссылкам от стартовой страницы
+ * @param offset положение записи в файле {@link DiskFrontier}; {@code -1} для очереди в памяти
+ */
+public record FrontierUrl(String url, int depth, long offset) {
+}
@@ -0,0 +1,107 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает частоту запросов к каждому хосту по схеме token bucket (GCRA):
+ * не чаще одного запроса в {@code interval}, с допустимой пачкой из {@code burst}
+ * запросов. Планировщик не усыпляет потоки, а лишь сообщает, через сколько
+ * можно выполнить запрос, — ожидание ведёт {@link java.util.concurrent.DelayQueue} конвейера.
+ * <p>
+ * На ответы 429/503 интервал хоста удваивается (до {@code max-crawl-delay})
+ * с учётом Retry-After, после успешных ответов постепенно возвращается к базовому.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class HostPolitenessScheduler {
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Задаёт базовый интервал и размер пачки для хоста сайта.
+     */
+    public void configure(String url, long delayMs, int burst) {
+        HostState state = hosts.computeIfAbsent(host(url), host -> new HostState());
+        state.configure(TimeUnit.MILLISECONDS.toNanos(delayMs), Math.max(1, burst));
+        log.info("Интервал запросов к {}: {} мс, пачка: {}", host(url), delayMs, burst);
+    }
+
+    /**
+     * Резервирует для {@code url} ближайший разрешённый момент запроса.
+     *
+     * @return сколько наносекунд нужно подождать перед запросом
+     */
+    public long reserve(String url) {
+        return state(url).reserve(System.nanoTime());
+    }
+
+    public void onThrottled(String url, long retryAfterMs) {
+        HostState state = state(url);
+        long maxInterval = TimeUnit.MILLISECONDS.toNanos(crawlerSettings.getMaxCrawlDelay());
+        long interval = state.throttle(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(retryAfterMs), maxInterval);
+        log.warn("Хост {} просит снизить частоту, интервал: {} мс", host(url), TimeUnit.NANOSECONDS.toMillis(interval));
+    }
+
+    public void onSuccess(String url) {
+        state(url).recover();
+    }
+
+    private HostState state(String url) {
+        return hosts.computeIfAbsent(host(url), host -> {
+            HostState state = new HostState();
+            state.configure(TimeUnit.MILLISECONDS.toNanos(crawlerSettings.getCrawlDelay()), crawlerSettings.getCrawlBurst());
+            return state;
+        });
+    }
+
+    static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private static class HostState {
+        private long baseInterval;
+        private long interval;
+        private int burst = 1;
+        private long theoreticalArrival;
+
+        private synchronized void configure(long baseInterval, int burst) {
+            this.baseInterval = baseInterval;
+            this.interval = Math.max(interval, baseInterval);
+            this.burst = burst;
+        }
+
+        private synchronized long reserve(long now) {
+            long allowedAt = Math.max(now, theoreticalArrival - (burst - 1) * interval);
+            theoreticalArrival = Math.max(theoreticalArrival, allowedAt) + interval;
+            return allowedAt - now;
+        }
+
+        private synchronized long throttle(long now, long retryAfter, long maxInterval) {
+            interval = Math.min(maxInterval, Math.max(interval * 2, TimeUnit.SECONDS.toNanos(1)));
+            theoreticalArrival = Math.max(theoreticalArrival, now + Math.max(retryAfter, interval));
+            return interval;
+        }
+
+        private synchronized void recover() {
+            if (interval > baseInterval) {
+                interval = Math.max(baseInterval, interval - (interval - baseInterval) / 8);
+            }
+        }
+    }
+}
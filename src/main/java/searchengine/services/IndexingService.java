@@ -1,7 +1,10 @@
 package searchengine.services;
 
+import searchengine.dto.statistics.UrlPage;
+
 public interface IndexingService<T> {
     T startIndexing();
     T stopIndexing();
-    T indexPage(String url);
+    T indexPage(UrlPage url);
+    boolean isIndexing();
 }
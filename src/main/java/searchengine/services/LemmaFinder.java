@@ -0,0 +1,296 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.LemmaSettings;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разбивает текст на слова и приводит их к леммам с помощью словарей
+ * LuceneMorphology. Служебные части речи (предлоги, союзы, частицы,
+ * междометия) отбрасываются.
+ * <p>
+ * Текст просматривается посимвольно без регулярных выражений: слова страницы
+ * сначала считаются как отрезки одного буфера, и строка создаётся только для
+ * каждого различного слова. Леммы слов хранятся в общем кэше на
+ * {@code cacheSize} слов: частота слов в текстах сильно неравномерна, так что
+ * словари вызываются в основном для редких слов.
+ */
+@Slf4j
+@Component
+public class LemmaFinder {
+
+    private static final String[] RUSSIAN_PARTICLES = {"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ"};
+    private static final String[] ENGLISH_PARTICLES = {"CONJ", "PREP", "ARTICLE", "PART", "INT"};
+    private static final int DEFAULT_CACHE_SIZE = 200_000;
+    /**
+     * Отметка в кэше для слов без леммы: служебных и не распознанных.
+     */
+    private static final String NO_LEMMA = "";
+
+    private final LuceneMorphology russianMorphology;
+    private final LuceneMorphology englishMorphology;
+    private final int cacheSize;
+    /**
+     * Кэш из двух поколений: когда текущее заполняется, оно становится прежним,
+     * а слова, снова встреченные в прежнем, переносятся в новое текущее.
+     * Так в кэше остаются часто встречающиеся слова, а блокировок нет.
+     */
+    private volatile Map<String, String> cache = new ConcurrentHashMap<>();
+    private volatile Map<String, String> previousCache = Map.of();
+
+    public LemmaFinder() throws IOException {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    @Autowired
+    public LemmaFinder(LemmaSettings lemmaSettings) throws IOException {
+        this(lemmaSettings.getCacheSize());
+    }
+
+    /**
+     * @param cacheSize сколько слов держать в каждом поколении кэша; 0 — без кэша
+     */
+    public LemmaFinder(int cacheSize) throws IOException {
+        this.russianMorphology = new RussianLuceneMorphology();
+        this.englishMorphology = new EnglishLuceneMorphology();
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Возвращает леммы текста вместе с количеством их упоминаний.
+     */
+    public Map<String, Integer> collectLemmas(String text) {
+        WordCounts words = new WordCounts(text);
+        Map<String, Integer> lemmas = new HashMap<>(Math.max(16, words.size() * 2));
+        for (int slot = words.next(0); slot >= 0; slot = words.next(slot + 1)) {
+            String lemma = toLemma(words.word(slot));
+            if (lemma != null) {
+                lemmas.merge(lemma, words.count(slot), Integer::sum);
+            }
+        }
+        return lemmas;
+    }
+
+    public Set<String> getLemmaSet(String text) {
+        return collectLemmas(text).keySet();
+    }
+
+    /**
+     * Лемма одного слова или {@code null}, если слово служебное
+     * или не распознано словарём.
+     */
+    public String toLemma(String word) {
+        if (cacheSize <= 0) {
+            return findLemma(word);
+        }
+        Map<String, String> current = cache;
+        String lemma = current.get(word);
+        if (lemma == null) {
+            lemma = previousCache.get(word);
+            if (lemma == null) {
+                lemma = Objects.requireNonNullElse(findLemma(word), NO_LEMMA);
+            }
+            if (current.size() >= cacheSize) {
+                rotateCache(current);
+            }
+            cache.put(word, lemma);
+        }
+        return lemma == NO_LEMMA ? null : lemma;
+    }
+
+    public String clearHtml(String html) {
+        return Jsoup.parse(html).text();
+    }
+
+    private void rotateCache(Map<String, String> full) {
+        synchronized (this) {
+            if (cache == full) {
+                previousCache = full;
+                cache = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    private String findLemma(String word) {
+        LuceneMorphology morphology = morphologyFor(word);
+        if (morphology == null || !morphology.checkString(word)) {
+            return null;
+        }
+        try {
+            if (isParticle(morphology.getMorphInfo(word), morphology == russianMorphology
+                    ? RUSSIAN_PARTICLES : ENGLISH_PARTICLES)) {
+                return null;
+            }
+            List<String> normalForms = morphology.getNormalForms(word);
+            return normalForms.isEmpty() ? null : normalForms.get(0);
+        } catch (RuntimeException e) {
+            log.debug("Не удалось получить лемму для слова: {} {}", word, e.getMessage());
+            return null;
+        }
+    }
+
+    private LuceneMorphology morphologyFor(String word) {
+        if (word.isEmpty()) {
+            return null;
+        }
+        char first = word.charAt(0);
+        if (first >= 'а' && first <= 'я') {
+            return russianMorphology;
+        }
+        if (first >= 'a' && first <= 'z') {
+            return englishMorphology;
+        }
+        return null;
+    }
+
+    private boolean isParticle(List<String> morphInfo, String[] particles) {
+        for (String info : morphInfo) {
+            for (String particle : particles) {
+                if (info.contains(particle)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Слова текста с числом повторений. Буквы приводятся к нижнему регистру
+     * (ё — к е) в один буфер, остальные символы разделяют слова. Слово — отрезок
+     * буфера в таблице с открытой адресацией: ключ сравнивается по символам,
+     * счётчики хранятся в массивах int.
+     */
+    static final class WordCounts {
+        private final char[] buffer;
+        private int[] starts;
+        private int[] lengths;
+        private int[] hashes;
+        private int[] counts;
+        private int size;
+
+        WordCounts(String text) {
+            this.buffer = new char[text.length()];
+            int capacity = Integer.highestOneBit(Math.max(16, text.length() / 16)) * 2;
+            allocate(capacity);
+            int end = 0;
+            int start = -1;
+            int hash = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = normalize(text.charAt(i));
+                if (c != 0) {
+                    if (start < 0) {
+                        start = end;
+                        hash = 0;
+                    }
+                    buffer[end++] = c;
+                    hash = 31 * hash + c;
+                } else if (start >= 0) {
+                    add(start, end - start, hash);
+                    start = -1;
+                }
+            }
+            if (start >= 0) {
+                add(start, end - start, hash);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Первая занятая ячейка начиная с {@code from} или -1.
+         */
+        int next(int from) {
+            for (int slot = from; slot < counts.length; slot++) {
+                if (counts[slot] > 0) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        String word(int slot) {
+            return new String(buffer, starts[slot], lengths[slot]);
+        }
+
+        int count(int slot) {
+            return counts[slot];
+        }
+
+        private static char normalize(char c) {
+            if (c >= 'a' && c <= 'z' || c >= 'а' && c <= 'я') {
+                return c;
+            }
+            if (c >= 'A' && c <= 'Z' || c >= 'А' && c <= 'Я') {
+                return Character.toLowerCase(c);
+            }
+            if (c == 'ё' || c == 'Ё') {
+                return 'е';
+            }
+            return 0;
+        }
+
+        private void add(int start, int length, int hash) {
+            int mask = counts.length - 1;
+            int slot = mix(hash) & mask;
+            while (counts[slot] > 0) {
+                if (hashes[slot] == hash && lengths[slot] == length
+                        && Arrays.equals(buffer, starts[slot], starts[slot] + length, buffer, start, start + length)) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            starts[slot] = start;
+            lengths[slot] = length;
+            hashes[slot] = hash;
+            counts[slot] = 1;
+            if (++size * 2 > counts.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            int[] oldStarts = starts;
+            int[] oldLengths = lengths;
+            int[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            allocate(oldCounts.length * 2);
+            int mask = counts.length - 1;
+            for (int i = 0; i < oldCounts.length; i++) {
+                if (oldCounts[i] == 0) {
+                    continue;
+                }
+                int slot = mix(oldHashes[i]) & mask;
+                while (counts[slot] > 0) {
+                    slot = (slot + 1) & mask;
+                }
+                starts[slot] = oldStarts[i];
+                lengths[slot] = oldLengths[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        private void allocate(int capacity) {
+            starts = new int[capacity];
+            lengths = new int[capacity];
+            hashes = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.LemmaSettings;
+import searchengine.model.PageModel;
+import searchengine.model.SiteModel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Строит обратный индекс (таблицы lemma и index) по скачанным страницам.
+ * <p>
+ * Леммы страниц копятся в памяти отдельно для каждого сайта. Когда набирается
+ * {@link LemmaSettings#getBatchSize()} страниц, частоты лемм суммируются по всей
+ * пачке и записываются одним пакетным upsert, а строки index — одним пакетным insert.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class LemmaService {
+
+    private static final int SELECT_CHUNK_SIZE = 500;
+
+    private static final String UPSERT_LEMMA_SQL = "INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+    private static final String SELECT_LEMMA_IDS_SQL = "SELECT id, lemma FROM lemma WHERE site_id = :siteId AND lemma IN (:lemmas)";
+    private static final String INSERT_INDEX_SQL = "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES (?, ?, ?)";
+    private static final String DECREMENT_PAGE_LEMMAS_SQL = "UPDATE lemma SET frequency = frequency - 1 " +
+            "WHERE id IN (SELECT lemma_id FROM `index` WHERE page_id = ?)";
+    private static final String SELECT_PAGE_LEMMAS_SQL = "SELECT l.id, l.lemma, i.`rank` FROM `index` i " +
+            "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?";
+    private static final String DECREMENT_LEMMA_SQL = "UPDATE lemma SET frequency = frequency - 1 WHERE id = ?";
+    private static final String DELETE_UNUSED_LEMMA_SQL = "DELETE FROM lemma WHERE id = ? AND frequency <= 0";
+    private static final String DELETE_INDEX_SQL = "DELETE FROM `index` WHERE page_id = ? AND lemma_id = ?";
+    private static final String UPDATE_INDEX_RANK_SQL = "UPDATE `index` SET `rank` = ? WHERE page_id = ? AND lemma_id = ?";
+    private static final String DELETE_PAGE_SQL = "DELETE FROM page WHERE id = ?";
+    private static final String DELETE_UNUSED_LEMMAS_SQL = "DELETE FROM lemma WHERE site_id = ? AND frequency <= 0";
+    private static final String UNINDEXED_PAGES_CONDITION = "site_id = ? AND lemma_count > 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM `index` i WHERE i.page_id = page.id)";
+    private static final String SELECT_UNINDEXED_PAGES_SQL = "SELECT path FROM page WHERE " + UNINDEXED_PAGES_CONDITION;
+    private static final String DELETE_UNINDEXED_PAGES_SQL = "DELETE FROM page WHERE " + UNINDEXED_PAGES_CONDITION;
+
+    private final LemmaSettings lemmaSettings;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Integer, SiteBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * Ставит леммы сохранённой страницы (см. {@link LemmaFinder#collectLemmas(String)})
+     * в очередь на запись в индекс.
+     */
+    public void indexPage(PageModel pageModel, Map<String, Integer> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        SiteBuffer buffer = buffers.computeIfAbsent(pageModel.getSite().getId(), SiteBuffer::new);
+        List<PageLemmas> batch = buffer.add(new PageLemmas(pageModel.getId(), lemmas), lemmaSettings.getBatchSize());
+        if (batch != null) {
+            write(buffer, batch);
+        }
+    }
+
+    /**
+     * Записывает всё, что осталось в буфере сайта. Вызывается по окончании обхода.
+     */
+    public void flushSite(SiteModel siteModel) {
+        SiteBuffer buffer = buffers.get(siteModel.getId());
+        if (buffer != null) {
+            write(buffer, buffer.drain());
+        }
+    }
+
+    /**
+     * Удаляет страницы вместе с их строками index и уменьшает частоты их лемм.
+     * Используется, когда при повторной индексации содержимое страницы изменилось.
+     * Выполняется в транзакции вызывающего кода, если она есть.
+     */
+    public void removePages(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(pageIds.size());
+        pageIds.forEach(id -> args.add(new Object[]{id}));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(DECREMENT_PAGE_LEMMAS_SQL, args);
+            jdbcTemplate.batchUpdate(DELETE_PAGE_SQL, args);
+        });
+    }
+
+    /**
+     * Приводит индекс одной страницы к новому набору лемм, меняя только разницу:
+     * для исчезнувших лемм уменьшает частоту и удаляет строку index (а леммы, которые
+     * больше не встречаются на сайте, удаляет), для новых — увеличивает частоту
+     * и добавляет строку, у оставшихся обновляет rank.
+     * Выполняется в транзакции вызывающего кода, если она есть.
+     */
+    public void updatePageLemmas(PageModel pageModel, Map<String, Integer> lemmas) {
+        int pageId = pageModel.getId();
+        SiteBuffer buffer = buffers.computeIfAbsent(pageModel.getSite().getId(), SiteBuffer::new);
+        synchronized (buffer.writeLock) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, Integer> storedIds = new HashMap<>();
+                Map<String, Float> storedRanks = new HashMap<>();
+                jdbcTemplate.query(SELECT_PAGE_LEMMAS_SQL, rs -> {
+                    storedIds.put(rs.getString("lemma"), rs.getInt("id"));
+                    storedRanks.put(rs.getString("lemma"), rs.getFloat("rank"));
+                }, pageId);
+
+                List<Object[]> removed = new ArrayList<>();
+                List<Object[]> changed = new ArrayList<>();
+                storedIds.forEach((lemma, lemmaId) -> {
+                    Integer count = lemmas.get(lemma);
+                    if (count == null) {
+                        removed.add(new Object[]{pageId, lemmaId});
+                        // строку леммы могут удалить ниже, её id больше не годится
+                        buffer.lemmaIds.remove(lemma);
+                    } else if (count.floatValue() != storedRanks.get(lemma)) {
+                        changed.add(new Object[]{count.floatValue(), pageId, lemmaId});
+                    }
+                });
+                Map<String, Integer> added = new TreeMap<>();
+                lemmas.forEach((lemma, count) -> {
+                    if (!storedIds.containsKey(lemma)) {
+                        added.put(lemma, count);
+                    }
+                });
+
+                jdbcTemplate.batchUpdate(DELETE_INDEX_SQL, removed);
+                List<Object[]> removedLemmaIds = removed.stream().map(args -> new Object[]{args[1]}).toList();
+                jdbcTemplate.batchUpdate(DECREMENT_LEMMA_SQL, removedLemmaIds);
+                jdbcTemplate.batchUpdate(DELETE_UNUSED_LEMMA_SQL, removedLemmaIds);
+                jdbcTemplate.batchUpdate(UPDATE_INDEX_RANK_SQL, changed);
+                if (!added.isEmpty()) {
+                    Map<String, Integer> frequencies = new TreeMap<>();
+                    added.keySet().forEach(lemma -> frequencies.put(lemma, 1));
+                    upsertLemmas(buffer.siteId, frequencies);
+                    resolveLemmaIds(buffer, added.keySet());
+                    insertIndexes(buffer, List.of(new PageLemmas(pageId, added)));
+                }
+                log.info("Обновлён индекс страницы id: {}: удалено лемм {}, добавлено {}, изменено {}",
+                        pageId, removed.size(), added.size(), changed.size());
+            });
+        }
+    }
+
+    /**
+     * Удаляет леммы сайта, которые больше не встречаются ни на одной странице,
+     * и сбрасывает кэш их идентификаторов.
+     */
+    public void removeUnusedLemmas(SiteModel siteModel) {
+        int removed = jdbcTemplate.update(DELETE_UNUSED_LEMMAS_SQL, siteModel.getId());
+        buffers.remove(siteModel.getId());
+        log.info("Удалено неиспользуемых лемм: {} для site_id: {}", removed, siteModel.getId());
+    }
+
+    /**
+     * Удаляет страницы сайта, у которых есть леммы, но нет ни одной строки index:
+     * леммы не успели попасть в БД до остановки приложения. Вызывается до начала
+     * обхода, пока в страницы сайта никто не пишет.
+     *
+     * @return пути удалённых страниц, их нужно обойти заново
+     */
+    public List<String> removeUnindexedPages(SiteModel siteModel) {
+        List<String> paths = jdbcTemplate.queryForList(SELECT_UNINDEXED_PAGES_SQL, String.class, siteModel.getId());
+        if (!paths.isEmpty()) {
+            jdbcTemplate.update(DELETE_UNINDEXED_PAGES_SQL, siteModel.getId());
+        }
+        log.info("Удалено страниц без индекса: {} для site_id: {}", paths.size(), siteModel.getId());
+        return paths;
+    }
+
+    /**
+     * Забывает буфер и кэш идентификаторов лемм сайта, данные которого удаляются.
+     */
+    public void discardSite(SiteModel siteModel) {
+        buffers.remove(siteModel.getId());
+    }
+
+    private void write(SiteBuffer buffer, List<PageLemmas> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (buffer.writeLock) {
+            Map<String, Integer> frequencies = new TreeMap<>();
+            for (PageLemmas page : batch) {
+                for (String lemma : page.lemmas().keySet()) {
+                    frequencies.merge(lemma, 1, Integer::sum);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                upsertLemmas(buffer.siteId, frequencies);
+                resolveLemmaIds(buffer, frequencies.keySet());
+                insertIndexes(buffer, batch);
+            });
+            log.info("Записано в индекс страниц: {}, лемм: {} для site_id: {}", batch.size(), frequencies.size(), buffer.siteId);
+        }
+    }
+
+    private void upsertLemmas(int siteId, Map<String, Integer> frequencies) {
+        List<Object[]> args = new ArrayList<>(frequencies.size());
+        frequencies.forEach((lemma, frequency) -> args.add(new Object[]{siteId, lemma, frequency}));
+        jdbcTemplate.batchUpdate(UPSERT_LEMMA_SQL, args);
+    }
+
+    private void resolveLemmaIds(SiteBuffer buffer, Collection<String> lemmas) {
+        List<String> unknown = new ArrayList<>();
+        for (String lemma : lemmas) {
+            if (!buffer.lemmaIds.containsKey(lemma)) {
+                unknown.add(lemma);
+            }
+        }
+        for (int from = 0; from < unknown.size(); from += SELECT_CHUNK_SIZE) {
+            List<String> chunk = unknown.subList(from, Math.min(from + SELECT_CHUNK_SIZE, unknown.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("siteId", buffer.siteId)
+                    .addValue("lemmas", chunk);
+            namedParameterJdbcTemplate.query(SELECT_LEMMA_IDS_SQL, params,
+                    rs -> {
+                        buffer.lemmaIds.put(rs.getString("lemma"), rs.getInt("id"));
+                    });
+        }
+    }
+
+    private void insertIndexes(SiteBuffer buffer, List<PageLemmas> batch) {
+        List<Object[]> args = new ArrayList<>();
+        for (PageLemmas page : batch) {
+            page.lemmas().forEach((lemma, count) -> {
+                Integer lemmaId = buffer.lemmaIds.get(lemma);
+                if (lemmaId != null) {
+                    args.add(new Object[]{page.pageId(), lemmaId, count.floatValue()});
+                } else {
+                    log.warn("Не найден id леммы: {} для site_id: {}", lemma, buffer.siteId);
+                }
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, args);
+    }
+
+    private record PageLemmas(int pageId, Map<String, Integer> lemmas) {
+    }
+
+    private static class SiteBuffer {
+        private final int siteId;
+        private final Object writeLock = new Object();
+        private final Map<String, Integer> lemmaIds = new HashMap<>();
+        private List<PageLemmas> pending = new ArrayList<>();
+
+        private SiteBuffer(int siteId) {
+            this.siteId = siteId;
+        }
+
+        private synchronized List<PageLemmas> add(PageLemmas page, int batchSize) {
+            pending.add(page);
+            return pending.size() >= batchSize ? drain() : null;
+        }
+
+        private synchronized List<PageLemmas> drain() {
+            List<PageLemmas> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+    }
+}
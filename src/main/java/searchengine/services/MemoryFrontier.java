@@ -0,0 +1,72 @@
+package searchengine.services;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь обхода в памяти с приоритетом по глубине: пока есть адреса
+ * меньшей глубины, более глубокие не выдаются. Внутри одной глубины —
+ * в порядке добавления.
+ */
+public class MemoryFrontier implements CrawlFrontier {
+
+    private final TreeMap<Integer, ArrayDeque<FrontierUrl>> byDepth = new TreeMap<>();
+    private int size;
+
+    @Override
+    public synchronized void add(Collection<String> urls, int depth) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        ArrayDeque<FrontierUrl> queue = byDepth.computeIfAbsent(depth, key -> new ArrayDeque<>());
+        urls.forEach(url -> queue.add(new FrontierUrl(url, depth, -1)));
+        size += urls.size();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized FrontierUrl poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (size == 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        Map.Entry<Integer, ArrayDeque<FrontierUrl>> shallowest = byDepth.firstEntry();
+        FrontierUrl url = shallowest.getValue().poll();
+        if (shallowest.getValue().isEmpty()) {
+            byDepth.remove(shallowest.getKey());
+        }
+        size--;
+        return url;
+    }
+
+    @Override
+    public void done(FrontierUrl url) {
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public void checkpoint() {
+    }
+
+    @Override
+    public synchronized void close() {
+        byDepth.clear();
+        size = 0;
+    }
+
+    @Override
+    public void discard() {
+        close();
+    }
+}
@@ -0,0 +1,196 @@
+package searchengine.services;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Поиск почти одинаковых страниц сайта по SimHash текста.
+ * <p>
+ * Отпечаток строится по шинглам из трёх подряд идущих слов, поэтому учитывает
+ * порядок слов, а не только их набор. У HTML-страницы берётся только основной
+ * текст: общие для всего сайта меню, шапка и подвал иначе перевешивают текст
+ * короткой страницы, и разные страницы выглядят одинаковыми. Страницы, отпечатки которых отличаются
+ * не больше чем в {@code maxDistance} битах, считаются дубликатами.
+ * <p>
+ * Для поиска 64 бита делятся на {@code maxDistance + 1} блоков: у близких
+ * отпечатков хотя бы один блок совпадает целиком, так что сравниваются только
+ * отпечатки из тех же корзин. На страницу в памяти хранится отпечаток, адрес
+ * и по одному int в корзине каждого блока.
+ */
+public class NearDuplicateIndex {
+
+    private static final int SHINGLE_SIZE = 3;
+    /**
+     * На коротких текстах отпечаток ненадёжен, такие страницы не сравниваются.
+     */
+    private static final int MIN_SHINGLES = 16;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String MAIN_CONTENT = "main, [role=main]";
+    private static final String BOILERPLATE = "nav, header, footer, aside, [role=navigation], [role=banner], "
+            + "[role=contentinfo], script, style, noscript, template";
+
+    private final int maxDistance;
+    private final int[] blockShift;
+    private final long[] blockMask;
+    private final Map<Long, int[]>[] buckets;
+    private long[] fingerprints = new long[1024];
+    private String[] paths = new String[1024];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public NearDuplicateIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 15));
+        int blocks = this.maxDistance + 1;
+        this.blockShift = new int[blocks];
+        this.blockMask = new long[blocks];
+        this.buckets = new Map[blocks];
+        int shift = 0;
+        for (int i = 0; i < blocks; i++) {
+            int bits = 64 / blocks + (i < 64 % blocks ? 1 : 0);
+            blockShift[i] = shift;
+            blockMask[i] = bits == 64 ? -1L : (1L << bits) - 1;
+            buckets[i] = new HashMap<>();
+            shift += bits;
+        }
+    }
+
+    /**
+     * SimHash основного текста страницы (см. {@link #mainText(Document)}).
+     */
+    public static Long fingerprint(Document document) {
+        return fingerprint(mainText(document));
+    }
+
+    /**
+     * Текст элемента {@code <main>}, а если его нет — текст {@code <body>} без
+     * навигации, шапки, подвала и боковых колонок.
+     */
+    public static String mainText(Document document) {
+        Element main = document.selectFirst(MAIN_CONTENT);
+        if (main != null) {
+            return main.text();
+        }
+        Element body = document.body().clone();
+        body.select(BOILERPLATE).remove();
+        return body.text();
+    }
+
+    /**
+     * SimHash текста или {@code null}, если текст слишком короткий для сравнения.
+     */
+    public static Long fingerprint(String text) {
+        int[] weights = new int[64];
+        long[] window = new long[SHINGLE_SIZE];
+        int words = 0;
+        int shingles = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            long hash = FNV_OFFSET;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                hash = (hash ^ Character.toLowerCase(text.charAt(i))) * FNV_PRIME;
+                i++;
+            }
+            window[words % SHINGLE_SIZE] = hash;
+            words++;
+            if (words < SHINGLE_SIZE) {
+                continue;
+            }
+            long shingle = 0;
+            for (int k = 0; k < SHINGLE_SIZE; k++) {
+                shingle = Long.rotateLeft(shingle, 21) ^ window[(words + k) % SHINGLE_SIZE];
+            }
+            shingle = mix(shingle);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((shingle >>> bit) & 1) == 1 ? 1 : -1;
+            }
+            shingles++;
+        }
+        if (shingles < MIN_SHINGLES) {
+            return null;
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Ищет страницу, близкую к {@code fingerprint}, и, если такой нет, запоминает эту.
+     *
+     * @return адрес найденного дубликата или {@code null}
+     */
+    public synchronized String findOrAdd(String path, long fingerprint) {
+        for (int block = 0; block < buckets.length; block++) {
+            int[] bucket = buckets[block].get(blockKey(fingerprint, block));
+            if (bucket == null) {
+                continue;
+            }
+            for (int j = 1; j <= bucket[0]; j++) {
+                int entry = bucket[j];
+                if (Long.bitCount(fingerprints[entry] ^ fingerprint) <= maxDistance && !paths[entry].equals(path)) {
+                    return paths[entry];
+                }
+            }
+        }
+        add(path, fingerprint);
+        return null;
+    }
+
+    /**
+     * Добавляет отпечаток уже сохранённой страницы без проверки.
+     */
+    public synchronized void add(String path, long fingerprint) {
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            paths = Arrays.copyOf(paths, size * 2);
+        }
+        fingerprints[size] = fingerprint;
+        paths[size] = path;
+        for (int block = 0; block < buckets.length; block++) {
+            // bucket[0] — число занятых ячеек
+            buckets[block].merge(blockKey(fingerprint, block), new int[]{1, size}, (bucket, single) -> {
+                if (bucket[0] + 1 == bucket.length) {
+                    bucket = Arrays.copyOf(bucket, bucket.length * 2);
+                }
+                bucket[++bucket[0]] = single[1];
+                return bucket;
+            });
+        }
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private long blockKey(long fingerprint, int block) {
+        return (fingerprint >>> blockShift[block]) & blockMask[block];
+    }
+
+    /**
+     * Финализатор MurmurHash3: хорошо перемешивает биты хэша шингла.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
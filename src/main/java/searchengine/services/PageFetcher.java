@@ -0,0 +1,229 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.PageValidators;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP-загрузка для обхода через один общий {@link HttpClient}: соединения
+ * с хостом переиспользуются между страницами (keep-alive, а по HTTPS — HTTP/2
+ * с мультиплексированием запросов), ответы запрашиваются сжатыми gzip/deflate.
+ * Одновременность запросов к хосту ограничивают потоки загрузки
+ * и {@code max-fetches-per-host}, Jsoup только разбирает полученное тело.
+ * <p>
+ * Тело ответа читается потоком и только если код ответа 2xx, а Content-Type
+ * из заголовков — текст: картинки, архивы и прочее закрываются, не скачиваясь.
+ * Тело длиннее {@code maxBodySize} обрезается, запрос целиком ограничен
+ * {@code fetch-timeout}. Тайм-аут {@link HttpRequest} покрывает только ожидание
+ * заголовков, поэтому чтение тела обрывает таймер: по истечении срока он
+ * закрывает поток тела, и заблокированный {@code read()} падает.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:92.0) Gecko/20100101 Firefox/92.0";
+    private static final String REFERRER = "https://www.google.com";
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final CrawlerSettings crawlerSettings;
+    private final HttpClient client;
+    private final ScheduledExecutorService bodyTimeouts = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public PageFetcher(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+        this.client = HttpClient.newBuilder()
+                .version(crawlerSettings.getHttpVersion())
+                .connectTimeout(Duration.ofMillis(crawlerSettings.getConnectTimeout()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Загружает страницу; если известна прошлая версия, запрос условный
+     * (If-None-Match / If-Modified-Since).
+     */
+    public FetchResponse fetch(String url, PageValidators stored, long maxBodySize) throws IOException {
+        long deadline = System.nanoTime() + Duration.ofMillis(crawlerSettings.getFetchTimeout()).toNanos();
+        HttpRequest.Builder request = newRequest(url).header("Referer", REFERRER);
+        if (stored != null && stored.getEtag() != null) {
+            request.header("If-None-Match", stored.getEtag());
+        }
+        if (stored != null && stored.getLastModified() != null) {
+            request.header("If-Modified-Since", stored.getLastModified());
+        }
+        HttpResponse<InputStream> response = send(request.build());
+        int code = response.statusCode();
+        String contentType = header(response, "Content-Type");
+        byte[] body = null;
+        boolean truncated = false;
+        try (InputStream raw = response.body()) {
+            if (code >= 200 && code < 300 && isText(contentType)) {
+                AtomicBoolean expired = new AtomicBoolean();
+                ScheduledFuture<?> timer = bodyTimeouts.schedule(() -> {
+                    expired.set(true);
+                    closeQuietly(raw);
+                }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                try {
+                    InputStream in = decode(header(response, "Content-Encoding"), raw);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(initialCapacity(response, maxBodySize));
+                    truncated = copy(in, out, maxBodySize);
+                    body = out.toByteArray();
+                } catch (IOException e) {
+                    if (expired.get()) {
+                        throw new HttpTimeoutException("Превышено время загрузки страницы");
+                    }
+                    throw e;
+                } finally {
+                    timer.cancel(false);
+                }
+            }
+        }
+        if (truncated) {
+            log.warn("Страница больше {} байт, обрезана: {}", maxBodySize, url);
+        }
+        return new FetchResponse(code, contentType, charset(contentType), body, truncated,
+                header(response, "ETag"), header(response, "Last-Modified"), header(response, "Retry-After"));
+    }
+
+    /**
+     * Открывает служебный файл сайта (robots.txt, sitemap) через тот же клиент.
+     * Поток тела уже распакован по Content-Encoding, закрыть его должен вызывающий.
+     */
+    public StreamResponse open(String url) throws IOException {
+        HttpResponse<InputStream> response = send(newRequest(url).build());
+        int code = response.statusCode();
+        if (code < 200 || code >= 300) {
+            return new StreamResponse(code, response.body());
+        }
+        return new StreamResponse(code, decode(header(response, "Content-Encoding"), response.body()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bodyTimeouts.shutdownNow();
+    }
+
+    public static boolean isText(String contentType) {
+        return contentType != null && (contentType.startsWith("text/") || contentType.startsWith("application/xhtml+xml"));
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(crawlerSettings.getFetchTimeout()))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана: " + request.uri());
+        }
+    }
+
+    private static InputStream decode(String encoding, InputStream body) throws IOException {
+        if (encoding == null) {
+            return body;
+        }
+        return switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, READ_BUFFER_SIZE);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    private static String charset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + "charset=".length()).split(";", 2)[0].trim();
+        charset = charset.replace("\"", "").replace("'", "");
+        return charset.isEmpty() ? null : charset;
+    }
+
+    /**
+     * @return {@code true}, если тело оказалось длиннее {@code limit} и было обрезано
+     */
+    private static boolean copy(InputStream in, ByteArrayOutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (limit > 0 && total + read > limit) {
+                out.write(buffer, 0, (int) (limit - total));
+                return true;
+            }
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return false;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Ошибка закрытия тела ответа: {}", e.getMessage());
+        }
+    }
+
+    private static int initialCapacity(HttpResponse<?> response, long limit) {
+        try {
+            long length = response.headers().firstValueAsLong("Content-Length").orElse(READ_BUFFER_SIZE);
+            return (int) Math.max(READ_BUFFER_SIZE, Math.min(length, limit > 0 ? limit : Integer.MAX_VALUE - 8));
+        } catch (NumberFormatException e) {
+            return READ_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * @param body тело ответа; {@code null}, если ответ не 2xx или не текстовый
+     */
+    public record FetchResponse(int code, String contentType, String charset, byte[] body, boolean truncated,
+                                String etag, String lastModified, String retryAfter) {
+    }
+
+    public record StreamResponse(int code, InputStream body) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.PageModel;
+
+/**
+ * Выдаёт id страниц из последовательности {@link PageModel#ID_SEQUENCE} блоками
+ * по {@link PageModel#ID_ALLOCATION_SIZE}: за блок — один короткий запрос к БД.
+ * <p>
+ * Последовательность создаёт Hibernate по {@code @SequenceGenerator} страницы.
+ * На MySQL это таблица из одной строки {@code next_val}; она читается с блокировкой
+ * строки и сдвигается на размер блока в отдельной короткой транзакции, чтобы
+ * блокировка не держалась до конца записи страниц. На БД с настоящими
+ * последовательностями (H2 в симуляции) шаг последовательности уже равен размеру
+ * блока, и блок берётся одним {@code NEXT VALUE FOR}.
+ * <p>
+ * Полученное значение {@code V} понимается так же, как у оптимизатора pooled
+ * в Hibernate: это последний id блока {@code [V - 99, V]}. Поэтому блоки не
+ * пересекаются с теми, что Hibernate выдал бы по {@code @GeneratedValue}
+ * страницы. Начальное значение последовательности целого блока не задаёт
+ * и пропускается.
+ */
+@Slf4j
+@Component
+public class PageIdAllocator {
+
+    private static final String SELECT_NEXT_VAL_SQL = "SELECT next_val FROM " + PageModel.ID_SEQUENCE + " FOR UPDATE";
+    private static final String UPDATE_NEXT_VAL_SQL = "UPDATE " + PageModel.ID_SEQUENCE + " SET next_val = ? WHERE next_val = ?";
+    private static final String NEXT_SEQUENCE_VALUE_SQL = "SELECT NEXT VALUE FOR " + PageModel.ID_SEQUENCE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private Boolean sequenceTable;
+    private long next;
+    private long limit;
+
+    @Autowired
+    public PageIdAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized int next() {
+        if (next == limit) {
+            long last = allocateBlock();
+            next = last - PageModel.ID_ALLOCATION_SIZE + 1;
+            limit = last + 1;
+        }
+        return Math.toIntExact(next++);
+    }
+
+    /**
+     * @return последний id нового блока
+     */
+    private long allocateBlock() {
+        long last = nextValue();
+        if (last < PageModel.ID_ALLOCATION_SIZE) {
+            last = nextValue();
+        }
+        return last;
+    }
+
+    private long nextValue() {
+        if (sequenceTable == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            sequenceTable = "MySQL".equalsIgnoreCase(product);
+            log.info("Id страниц выдаются из {} {}", sequenceTable ? "таблицы" : "последовательности", PageModel.ID_SEQUENCE);
+        }
+        if (!sequenceTable) {
+            return jdbcTemplate.queryForObject(NEXT_SEQUENCE_VALUE_SQL, Long.class);
+        }
+        return newTransaction.execute(status -> {
+            long start = jdbcTemplate.queryForObject(SELECT_NEXT_VAL_SQL, Long.class);
+            if (jdbcTemplate.update(UPDATE_NEXT_VAL_SQL, start + PageModel.ID_ALLOCATION_SIZE, start) != 1) {
+                throw new IllegalStateException("Не удалось сдвинуть " + PageModel.ID_SEQUENCE);
+            }
+            return start;
+        });
+    }
+}
@@ -3,9 +3,12 @@ package searchengine.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.model.PageContentConverter;
 import searchengine.model.PageModel;
 import searchengine.model.SiteModel;
 import searchengine.model.Status;
@@ -13,33 +16,101 @@ import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class PageService {
 
+    /**
+     * Уникальный ключ {@code (site_id, path_hash)} сам отсекает повторную запись
+     * страницы: строка пропускается, а не падает вся пачка. Пустой
+     * {@code ON DUPLICATE KEY UPDATE} гасит только дубликат ключа, ошибки внешних
+     * ключей, обрезки и неверных значений по-прежнему падают.
+     */
+    private static final String INSERT_PAGE_SQL = "INSERT INTO page (id, site_id, path, path_hash, code, content, " +
+            "etag, last_modified, content_hash, simhash, lemma_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+    private static final String SELECT_PAGE_IDS_SQL = "SELECT id FROM page WHERE id IN (:ids)";
+
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
+    private final LemmaService lemmaService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final PageContentConverter contentConverter;
+    private final PageIdAllocator pageIdAllocator;
 
     @Transactional
-    public synchronized void updateSiteStatus(SiteModel siteModel, Status status, String errorMessage) {
+    public void updateSiteStatus(SiteModel siteModel, Status status, String errorMessage) {
         siteModel.setStatus(status);
         siteModel.setStatusTime(LocalDateTime.now());
         siteModel.setLastError(errorMessage);
         siteRepository.save(siteModel);
     }
 
+    /**
+     * Добавляет новые страницы одним пакетным insert. Id выдаёт {@link PageIdAllocator}
+     * заранее, поэтому строки не нужно вставлять по одной ради сгенерированного ключа.
+     * У страниц, чей путь на сайте уже есть в таблице, id сбрасывается в {@code null}.
+     *
+     * @return сколько страниц записано
+     */
     @Transactional
-    public synchronized void savePageModel(PageModel pageModel) {
-        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
-                log.info("Не найдена активная транзакция! = {}", pageModel);
+    public int savePageModels(List<PageModel> pageModels) {
+        List<Object[]> args = new ArrayList<>(pageModels.size());
+        List<Integer> ids = new ArrayList<>(pageModels.size());
+        for (PageModel pageModel : pageModels) {
+            pageModel.setId(pageIdAllocator.next());
+            ids.add(pageModel.getId());
+            args.add(new Object[]{pageModel.getId(), pageModel.getSite().getId(), pageModel.getPath(),
+                    pageModel.getPathHash(), pageModel.getCode(),
+                    contentConverter.convertToDatabaseColumn(pageModel.getContent()), pageModel.getEtag(),
+                    pageModel.getLastModified(), pageModel.getContentHash(), pageModel.getSimhash(),
+                    pageModel.getLemmaCount()});
         }
         try {
-             pageRepository.save(pageModel);
+            jdbcTemplate.batchUpdate(INSERT_PAGE_SQL, args);
         } catch (Exception e) {
             log.error("Ошибка при сохранении PageModel: {}", e.getMessage());
             throw e;
         }
+        // счётчики строк пакетного ON DUPLICATE KEY UPDATE ненадёжны, записанные строки узнаются по id
+        Set<Integer> inserted = new HashSet<>(namedParameterJdbcTemplate.queryForList(SELECT_PAGE_IDS_SQL,
+                new MapSqlParameterSource("ids", ids), Integer.class));
+        for (PageModel pageModel : pageModels) {
+            if (!inserted.contains(pageModel.getId())) {
+                pageModel.setId(null);
+            }
+        }
+        return inserted.size();
+    }
+
+    /**
+     * Сохраняет новую версию страницы и разницу её лемм одной транзакцией.
+     * Новая страница вставляется тем же INSERT, что и при обходе; если
+     * обход успел записать страницу с этим путём раньше, обновляется его строка.
+     */
+    @Transactional
+    public void reindexPage(PageModel pageModel, Map<String, Integer> lemmas) {
+        if (pageModel.getId() != null) {
+            pageRepository.save(pageModel);
+        } else if (savePageModels(List.of(pageModel)) == 0) {
+            PageModel stored = pageRepository.findBySiteAndPath(pageModel.getSite(), pageModel.getPath());
+            stored.setCode(pageModel.getCode());
+            stored.setContent(pageModel.getContent());
+            stored.setEtag(pageModel.getEtag());
+            stored.setLastModified(pageModel.getLastModified());
+            stored.setContentHash(pageModel.getContentHash());
+            stored.setSimhash(pageModel.getSimhash());
+            stored.setLemmaCount(pageModel.getLemmaCount());
+            pageModel = pageRepository.save(stored);
+        }
+        lemmaService.updatePageLemmas(pageModel, lemmas);
     }
 }
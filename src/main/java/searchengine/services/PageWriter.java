@@ -0,0 +1,217 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.PageModel;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Отложенная запись страниц обхода в БД (write-behind).
+ * <p>
+ * Потоки обхода всех сайтов только кладут страницы в общую очередь и БД не ждут.
+ * Один поток записи забирает страницы пачками по {@code persistBatchSize} или,
+ * если пачка не набралась, через {@code persistFlushInterval} мс после первой
+ * страницы, и пишет их пакетным insert. Время статуса сайтов обновляет
+ * {@link SiteProgressTracker}.
+ */
+@Slf4j
+@Component
+public class PageWriter {
+
+    public enum Result {
+        SAVED,
+        /**
+         * Страница с тем же путём на сайте уже записана.
+         */
+        SKIPPED,
+        /**
+         * Страница, пропавшая с сайта, удалена вместе с её леммами.
+         */
+        REMOVED,
+        FAILED
+    }
+
+    /**
+     * @param replacedPageId id прежней версии страницы, удаляется перед записью новой
+     * @param onWritten      вызывается потоком записи, когда судьба страницы решена
+     */
+    public record PageWrite(PageModel pageModel, Map<String, Integer> lemmas, Integer replacedPageId,
+                            Consumer<Result> onWritten) {
+    }
+
+    /**
+     * Удаление сохранённой страницы, которой больше нет на сайте (ответ 404/410).
+     */
+    public record PageRemoval(int siteId, int pageId, Consumer<Result> onWritten) {
+    }
+
+    private final CrawlerSettings crawlerSettings;
+    private final PageService pageService;
+    private final LemmaService lemmaService;
+    private final PostingsCache postingsCache;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * {@link PageWrite}, {@link PageRemoval} или {@link CompletableFuture} из {@link #flush()}.
+     */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+
+    @Autowired
+    public PageWriter(CrawlerSettings crawlerSettings, PageService pageService, LemmaService lemmaService,
+                      PostingsCache postingsCache, TransactionTemplate transactionTemplate) {
+        this.crawlerSettings = crawlerSettings;
+        this.pageService = pageService;
+        this.lemmaService = lemmaService;
+        this.postingsCache = postingsCache;
+        this.transactionTemplate = transactionTemplate;
+        this.flusher = new Thread(this::flushLoop, "page-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void write(PageWrite page) {
+        queue.add(page);
+    }
+
+    public void remove(PageRemoval removal) {
+        queue.add(removal);
+    }
+
+    /**
+     * @return завершается, когда записано всё, что было поставлено до вызова
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        queue.add(flushed);
+        return flushed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.interrupt();
+    }
+
+    private void flushLoop() {
+        List<Object> drained = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                collect(drained);
+                List<Object> batch = new ArrayList<>(drained.size());
+                for (Object item : drained) {
+                    if (item instanceof CompletableFuture<?> flushed) {
+                        writeBatch(batch);
+                        batch.clear();
+                        flushed.complete(null);
+                    } else {
+                        batch.add(item);
+                    }
+                }
+                writeBatch(batch);
+                drained.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ждёт первую страницу не дольше {@code persistFlushInterval} и добирает пачку,
+     * пока она не наполнится, не истечёт то же время или не встретится {@link #flush()}.
+     */
+    private void collect(List<Object> drained) throws InterruptedException {
+        long interval = crawlerSettings.getPersistFlushInterval();
+        int batchSize = Math.max(1, crawlerSettings.getPersistBatchSize());
+        Object first = queue.poll(interval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        drained.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+        while (drained.size() < batchSize && !(drained.get(drained.size() - 1) instanceof CompletableFuture)) {
+            if (queue.drainTo(drained, batchSize - drained.size()) > 0) {
+                continue;
+            }
+            Object next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            drained.add(next);
+        }
+    }
+
+    /**
+     * Пишет пачку: удаляет заменяемые и пропавшие страницы, вставляет новые версии
+     * и ставит их леммы в индекс. Удаление и вставка идут одной транзакцией: если
+     * вставка упала, прежняя версия страницы остаётся на месте. У сайтов, где страницы удалены, сбрасывается
+     * кэш поиска, иначе он отдавал бы id уже удалённых страниц.
+     */
+    private void writeBatch(List<Object> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PageWrite> pages = new ArrayList<>(batch.size());
+        List<PageRemoval> removals = new ArrayList<>();
+        List<PageModel> pageModels = new ArrayList<>(batch.size());
+        List<Integer> removedPageIds = new ArrayList<>();
+        Set<Integer> changedSites = new HashSet<>();
+        for (Object item : batch) {
+            if (item instanceof PageWrite page) {
+                pages.add(page);
+                pageModels.add(page.pageModel());
+                if (page.replacedPageId() != null) {
+                    removedPageIds.add(page.replacedPageId());
+                    changedSites.add(page.pageModel().getSite().getId());
+                }
+            } else if (item instanceof PageRemoval removal) {
+                removals.add(removal);
+                removedPageIds.add(removal.pageId());
+                changedSites.add(removal.siteId());
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lemmaService.removePages(removedPageIds);
+                if (!pageModels.isEmpty()) {
+                    pageService.savePageModels(pageModels);
+                }
+            });
+            for (PageWrite page : pages) {
+                // без id — страницу с этим путём уже записали, её леммы уже в индексе
+                if (page.pageModel().getId() != null) {
+                    lemmaService.indexPage(page.pageModel(), page.lemmas());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи страниц: {}", e.getMessage());
+            pages.forEach(page -> notify(page.onWritten(), Result.FAILED));
+            removals.forEach(removal -> notify(removal.onWritten(), Result.FAILED));
+            return;
+        } finally {
+            changedSites.forEach(postingsCache::invalidateSite);
+        }
+        pages.forEach(page -> notify(page.onWritten(), page.pageModel().getId() != null ? Result.SAVED : Result.SKIPPED));
+        removals.forEach(removal -> notify(removal.onWritten(), Result.REMOVED));
+    }
+
+    private static void notify(Consumer<Result> onWritten, Result result) {
+        try {
+            onWritten.accept(result);
+        } catch (RuntimeException e) {
+            log.error("Ошибка обработки записанной страницы: {}", e.getMessage(), e);
+        }
+    }
+}
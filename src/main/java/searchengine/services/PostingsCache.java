@@ -0,0 +1,187 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Кэш обратного индекса для поиска: частота леммы на сайте и отсортированный
+ * по page_id список страниц с рангами. Размер ограничен суммарным числом
+ * записей ({@link SearchSettings#getPostingsCacheSize()}), при переполнении
+ * вытесняются давно не использованные леммы. При переиндексации сайта его
+ * записи сбрасываются через {@link #invalidateSite(int)}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PostingsCache {
+
+    private static final String SELECT_LEMMAS_SQL = "SELECT id, lemma, frequency FROM lemma WHERE site_id = :siteId AND lemma IN (:lemmas)";
+    private static final String SELECT_POSTINGS_SQL = "SELECT page_id, `rank` FROM `index` WHERE lemma_id = ? ORDER BY page_id";
+    private static final String COUNT_PAGES_SQL = "SELECT COUNT(*) FROM page WHERE site_id = ?";
+
+    private final SearchSettings searchSettings;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final LinkedHashMap<Key, Postings> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private final Map<Integer, Integer> pageCounts = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> versions = new ConcurrentHashMap<>();
+    private long weight;
+
+    /**
+     * Частоты и идентификаторы лемм сайта. Для неизвестной леммы возвращается
+     * запись с нулевой частотой. Списки страниц при этом не загружаются.
+     */
+    public Map<String, Postings> getLemmaStats(int siteId, Collection<String> lemmas) {
+        Map<String, Postings> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String lemma : lemmas) {
+                Postings postings = entries.get(new Key(siteId, lemma));
+                if (postings != null) {
+                    result.put(lemma, postings);
+                } else {
+                    missing.add(lemma);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        int version = version(siteId);
+        Map<String, Postings> loaded = new HashMap<>();
+        for (String lemma : missing) {
+            loaded.put(lemma, new Postings(0, 0, null, null));
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("siteId", siteId)
+                .addValue("lemmas", missing);
+        namedParameterJdbcTemplate.query(SELECT_LEMMAS_SQL, params, rs -> {
+            loaded.put(rs.getString("lemma"), new Postings(rs.getInt("id"), rs.getInt("frequency"), null, null));
+        });
+        loaded.forEach((lemma, postings) -> put(siteId, lemma, postings, version));
+        result.putAll(loaded);
+        return result;
+    }
+
+    /**
+     * Список страниц леммы. Если в кэше только частота, список читается из таблицы index.
+     */
+    public Postings getPostings(int siteId, String lemma, Postings stats) {
+        if (stats.isLoaded() || stats.frequency() == 0) {
+            return stats;
+        }
+        synchronized (this) {
+            Postings cached = entries.get(new Key(siteId, lemma));
+            if (cached != null && cached.isLoaded()) {
+                return cached;
+            }
+        }
+        int version = version(siteId);
+        PostingsBuilder builder = new PostingsBuilder(stats.frequency());
+        jdbcTemplate.query(SELECT_POSTINGS_SQL, rs -> {
+            builder.add(rs.getInt("page_id"), rs.getFloat("rank"));
+        }, stats.lemmaId());
+        Postings postings = builder.build(stats.lemmaId(), stats.frequency());
+        put(siteId, lemma, postings, version);
+        return postings;
+    }
+
+    public int getPageCount(int siteId) {
+        return pageCounts.computeIfAbsent(siteId, id -> {
+            Integer count = jdbcTemplate.queryForObject(COUNT_PAGES_SQL, Integer.class, id);
+            return count == null ? 0 : count;
+        });
+    }
+
+    /**
+     * Сбрасывает все записи сайта. Загрузки, начатые до сброса, в кэш уже не попадут.
+     */
+    public void invalidateSite(int siteId) {
+        versions.computeIfAbsent(siteId, id -> new AtomicInteger()).incrementAndGet();
+        pageCounts.remove(siteId);
+        synchronized (this) {
+            Iterator<Map.Entry<Key, Postings>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Postings> entry = iterator.next();
+                if (entry.getKey().siteId() == siteId) {
+                    weight -= entry.getValue().weight();
+                    iterator.remove();
+                }
+            }
+        }
+        log.info("Кэш поиска сброшен для site_id: {}", siteId);
+    }
+
+    private int version(int siteId) {
+        return versions.computeIfAbsent(siteId, id -> new AtomicInteger()).get();
+    }
+
+    private synchronized void put(int siteId, String lemma, Postings postings, int version) {
+        if (version(siteId) != version) {
+            return;
+        }
+        Postings previous = entries.put(new Key(siteId, lemma), postings);
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += postings.weight();
+        Iterator<Postings> iterator = entries.values().iterator();
+        while (weight > searchSettings.getPostingsCacheSize() && iterator.hasNext()) {
+            weight -= iterator.next().weight();
+            iterator.remove();
+        }
+    }
+
+    private record Key(int siteId, String lemma) {
+    }
+
+    private static class PostingsBuilder {
+        private int[] pageIds;
+        private float[] ranks;
+        private int size;
+
+        private PostingsBuilder(int expectedSize) {
+            pageIds = new int[Math.max(expectedSize, 16)];
+            ranks = new float[pageIds.length];
+        }
+
+        private void add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+        }
+
+        private Postings build(int lemmaId, int frequency) {
+            return new Postings(lemmaId, frequency, Arrays.copyOf(pageIds, size), Arrays.copyOf(ranks, size));
+        }
+    }
+
+    /**
+     * Запись обратного индекса леммы: {@code pageIds} отсортированы по возрастанию,
+     * {@code ranks[i]} — ранг леммы на странице {@code pageIds[i]}.
+     */
+    public record Postings(int lemmaId, int frequency, int[] pageIds, float[] ranks) {
+
+        public boolean isLoaded() {
+            return pageIds != null;
+        }
+
+        private long weight() {
+            return 1L + (pageIds == null ? 0 : pageIds.length);
+        }
+    }
+}
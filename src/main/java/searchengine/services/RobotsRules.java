@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Правила robots.txt, относящиеся к нашему обходчику: Crawl-delay,
+ * Allow/Disallow для группы {@code User-agent: *} и ссылки на sitemap.
+ * Allow/Disallow понимают шаблоны {@code *} и {@code $} в конце, как у Google.
+ */
+@Getter
+public class RobotsRules {
+
+    public static final RobotsRules EMPTY = new RobotsRules(0, List.of(), List.of(), List.of());
+
+    private final long crawlDelayMs;
+    private final List<String> allow;
+    private final List<String> disallow;
+    private final List<String> sitemaps;
+    @Getter(AccessLevel.NONE)
+    private final List<Rule> allowRules;
+    @Getter(AccessLevel.NONE)
+    private final List<Rule> disallowRules;
+
+    public RobotsRules(long crawlDelayMs, List<String> allow, List<String> disallow, List<String> sitemaps) {
+        this.crawlDelayMs = crawlDelayMs;
+        this.allow = allow;
+        this.disallow = disallow;
+        this.sitemaps = sitemaps;
+        this.allowRules = allow.stream().map(Rule::new).toList();
+        this.disallowRules = disallow.stream().map(Rule::new).toList();
+    }
+
+    /**
+     * Разрешён ли путь: побеждает самое длинное совпавшее правило, при равной длине — Allow.
+     */
+    public boolean isAllowed(String path) {
+        int allowLength = longestMatch(allowRules, path);
+        int disallowLength = longestMatch(disallowRules, path);
+        return disallowLength < 0 || allowLength >= disallowLength;
+    }
+
+    public static RobotsRules parse(String robotsTxt) {
+        long crawlDelayMs = 0;
+        List<String> allow = new ArrayList<>();
+        List<String> disallow = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        boolean inGroup = false;
+        boolean readingAgents = false;
+        for (String rawLine : robotsTxt.split("\r?\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        inGroup = false;
+                    }
+                    readingAgents = true;
+                    inGroup |= value.equals("*");
+                }
+                case "allow" -> {
+                    readingAgents = false;
+                    if (inGroup && !value.isEmpty()) {
+                        allow.add(value);
+                    }
+                }
+                case "disallow" -> {
+                    readingAgents = false;
+                    if (inGroup && !value.isEmpty()) {
+                        disallow.add(value);
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    if (inGroup) {
+                        crawlDelayMs = parseDelay(value);
+                    }
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> readingAgents = false;
+            }
+        }
+        return new RobotsRules(crawlDelayMs, allow, disallow, sitemaps);
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            return (long) (Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int longestMatch(List<Rule> rules, String path) {
+        int longest = -1;
+        for (Rule rule : rules) {
+            if (rule.length > longest && rule.matches(path)) {
+                longest = rule.length;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Правило Allow/Disallow: {@code *} — любая последовательность символов,
+     * {@code $} в конце привязывает правило к концу пути, иначе правило — префикс.
+     */
+    private static final class Rule {
+        private final int length;
+        private final boolean anchored;
+        /**
+         * Части правила между {@code *}; их ищем в пути по порядку, каждую — как можно левее.
+         */
+        private final String[] parts;
+
+        private Rule(String rule) {
+            this.length = rule.length();
+            this.anchored = rule.endsWith("$");
+            this.parts = (anchored ? rule.substring(0, rule.length() - 1) : rule).split("\\*", -1);
+        }
+
+        private boolean matches(String path) {
+            if (!path.startsWith(parts[0])) {
+                return false;
+            }
+            int position = parts[0].length();
+            if (parts.length == 1) {
+                return !anchored || path.length() == position;
+            }
+            for (int i = 1; i < parts.length - 1; i++) {
+                int found = path.indexOf(parts[i], position);
+                if (found < 0) {
+                    return false;
+                }
+                position = found + parts[i].length();
+            }
+            String last = parts[parts.length - 1];
+            if (anchored) {
+                return path.length() - last.length() >= position && path.endsWith(last);
+            }
+            return path.indexOf(last, position) >= 0;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Загружает robots.txt один раз на хост и держит разобранные правила в памяти.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class RobotsTxtService {
+
+    private final PageFetcher pageFetcher;
+    private final Map<String, RobotsRules> rulesByHost = new ConcurrentHashMap<>();
+
+    public RobotsRules getRules(String siteUrl) {
+        URI uri = URI.create(siteUrl);
+        String origin = uri.getScheme() + "://" + uri.getAuthority();
+        return rulesByHost.computeIfAbsent(origin, this::load);
+    }
+
+    /**
+     * Забывает правила хоста, чтобы следующая индексация прочитала robots.txt заново.
+     */
+    public void evict(String siteUrl) {
+        URI uri = URI.create(siteUrl);
+        rulesByHost.remove(uri.getScheme() + "://" + uri.getAuthority());
+    }
+
+    private RobotsRules load(String origin) {
+        try (PageFetcher.StreamResponse response = pageFetcher.open(origin + "/robots.txt")) {
+            if (response.code() != 200) {
+                log.info("robots.txt не найден для: {} код: {}", origin, response.code());
+                return RobotsRules.EMPTY;
+            }
+            RobotsRules rules = RobotsRules.parse(new String(response.body().readAllBytes(), StandardCharsets.UTF_8));
+            log.info("robots.txt для: {} Crawl-delay: {} мс, запретов: {}", origin, rules.getCrawlDelayMs(), rules.getDisallow().size());
+            return rules;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Не удалось загрузить robots.txt для: {} {}", origin, e.getMessage());
+            return RobotsRules.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchData;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.PageModel;
+import searchengine.model.SiteModel;
+import searchengine.model.Status;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.PostingsCache.Postings;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SearchServiceImpl implements SearchService {
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaFinder lemmaFinder;
+    private final PostingsCache postingsCache;
+    private final SnippetBuilder snippetBuilder;
+    private final SearchSettings searchSettings;
+
+    @Override
+    @Transactional(readOnly = true)
+    public SearchResponse search(String query, String site, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            return createErrorResponse("Задан пустой поисковый запрос");
+        }
+        Set<String> queryLemmas = lemmaFinder.getLemmaSet(query);
+        if (queryLemmas.isEmpty()) {
+            return createErrorResponse("В запросе нет слов, по которым можно искать");
+        }
+        List<SiteModel> sites = findSites(site);
+        if (sites.isEmpty()) {
+            return createErrorResponse(site == null ? "Нет проиндексированных сайтов" : "Указанный сайт не проиндексирован");
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (SiteModel siteModel : sites) {
+            searchSite(siteModel, queryLemmas, hits);
+        }
+        hits.sort(Comparator.comparingDouble(Hit::relevance).reversed());
+        log.info("Поиск: {} найдено страниц: {}", query, hits.size());
+
+        int from = Math.min(Math.max(offset, 0), hits.size());
+        int to = Math.min(from + Math.max(limit, 0), hits.size());
+        float maxRelevance = hits.isEmpty() ? 1 : hits.get(0).relevance();
+
+        SearchResponse searchResponse = new SearchResponse();
+        searchResponse.setResult(true);
+        searchResponse.setCount(hits.size());
+        searchResponse.setData(createSearchData(hits.subList(from, to), queryLemmas, maxRelevance));
+        return searchResponse;
+    }
+
+    private List<SiteModel> findSites(String site) {
+        if (site == null || site.isBlank()) {
+            return siteRepository.findAllByStatus(Status.INDEXED);
+        }
+        SiteModel siteModel = siteRepository.findByUrl(site);
+        return siteModel != null && siteModel.getStatus() == Status.INDEXED ? List.of(siteModel) : List.of();
+    }
+
+    /**
+     * Пересекает списки страниц лемм запроса, начиная с самой редкой леммы,
+     * и добавляет найденные страницы сайта с суммарным рангом в {@code hits}.
+     */
+    private void searchSite(SiteModel siteModel, Set<String> queryLemmas, List<Hit> hits) {
+        int siteId = siteModel.getId();
+        Map<String, Postings> stats = postingsCache.getLemmaStats(siteId, queryLemmas);
+        if (stats.values().stream().anyMatch(postings -> postings.frequency() == 0)) {
+            return;
+        }
+        List<String> lemmas = new ArrayList<>(stats.keySet());
+        lemmas.sort(Comparator.comparingInt(lemma -> stats.get(lemma).frequency()));
+
+        double maxFrequency = Math.max(1, postingsCache.getPageCount(siteId) * searchSettings.getMaxLemmaFrequency());
+        List<String> selected = lemmas.stream()
+                .filter(lemma -> stats.get(lemma).frequency() <= maxFrequency)
+                .collect(Collectors.toList());
+        if (selected.isEmpty()) {
+            selected = lemmas;
+        }
+
+        int[] pageIds = null;
+        float[] relevance = null;
+        for (String lemma : selected) {
+            Postings postings = postingsCache.getPostings(siteId, lemma, stats.get(lemma));
+            if (pageIds == null) {
+                pageIds = postings.pageIds().clone();
+                relevance = postings.ranks().clone();
+                continue;
+            }
+            int size = 0;
+            int cursor = 0;
+            for (int i = 0; i < pageIds.length; i++) {
+                int found = Arrays.binarySearch(postings.pageIds(), cursor, postings.pageIds().length, pageIds[i]);
+                if (found >= 0) {
+                    pageIds[size] = pageIds[i];
+                    relevance[size] = relevance[i] + postings.ranks()[found];
+                    size++;
+                    cursor = found + 1;
+                } else {
+                    cursor = -found - 1;
+                }
+            }
+            if (size == 0) {
+                return;
+            }
+            pageIds = Arrays.copyOf(pageIds, size);
+            relevance = Arrays.copyOf(relevance, size);
+        }
+        for (int i = 0; pageIds != null && i < pageIds.length; i++) {
+            hits.add(new Hit(siteModel, pageIds[i], relevance[i]));
+        }
+    }
+
+    private List<SearchData> createSearchData(List<Hit> hits, Set<String> queryLemmas, float maxRelevance) {
+        Map<Integer, PageModel> pages = pageRepository.findAllById(hits.stream().map(Hit::pageId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(PageModel::getId, Function.identity()));
+        List<SearchData> data = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            PageModel pageModel = pages.get(hit.pageId());
+            if (pageModel == null) {
+                continue;
+            }
+            SiteModel siteModel = hit.site();
+            Document document = Jsoup.parse(pageModel.getContent());
+            data.add(new SearchData(siteModel.getUrl(), siteModel.getName(), pageModel.getPath(),
+                    document.title(), snippetBuilder.build(document.text(), queryLemmas), hit.relevance() / maxRelevance));
+        }
+        return data;
+    }
+
+    private SearchResponse createErrorResponse(String error) {
+        SearchResponse searchResponse = new SearchResponse();
+        searchResponse.setResult(false);
+        searchResponse.setError(error);
+        return searchResponse;
+    }
+
+    private record Hit(SiteModel site, int pageId, float relevance) {
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.config.LemmaSettings;
+import searchengine.model.SiteModel;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Удаляет данные сайта в фоне порциями по {@link LemmaSettings#getDeleteChunkSize()} строк.
+ * <p>
+ * Каждая порция — отдельный короткий запрос без общей транзакции: блокировки
+ * держатся недолго, поиск и индексация других сайтов не ждут удаления.
+ * Если удаление прервётся, оставшееся удалится при следующей индексации сайта.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SiteCleanupService {
+
+    private static final String SELECT_PAGE_IDS_SQL = "SELECT id FROM page WHERE site_id = ? ORDER BY id LIMIT ?";
+    private static final String DELETE_INDEXES_SQL = "DELETE FROM `index` WHERE page_id IN (:ids)";
+    private static final String DELETE_PAGES_SQL = "DELETE FROM page WHERE id IN (:ids)";
+    private static final String SELECT_LEMMA_IDS_SQL = "SELECT id FROM lemma WHERE site_id = ? ORDER BY id LIMIT ?";
+    private static final String DELETE_LEMMAS_SQL = "DELETE FROM lemma WHERE id IN (:ids)";
+    private static final String DELETE_SITE_SQL = "DELETE FROM site WHERE id = ?";
+
+    private final LemmaSettings lemmaSettings;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    /**
+     * Сайты удаляются параллельно: полная переиндексация ждёт удаления только
+     * своего сайта, а не всех поставленных в очередь до него.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Удаляет сайт в отдельном потоке вместе со страницами, индексом и леммами.
+     */
+    public CompletableFuture<Void> deleteSite(SiteModel siteModel) {
+        int siteId = siteModel.getId();
+        return CompletableFuture.runAsync(() -> delete(siteId), executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void delete(int siteId) {
+        long start = System.currentTimeMillis();
+        int pages = deleteChunks(SELECT_PAGE_IDS_SQL, siteId, ids -> {
+            namedParameterJdbcTemplate.update(DELETE_INDEXES_SQL, new MapSqlParameterSource("ids", ids));
+            namedParameterJdbcTemplate.update(DELETE_PAGES_SQL, new MapSqlParameterSource("ids", ids));
+        });
+        int lemmas = deleteChunks(SELECT_LEMMA_IDS_SQL, siteId,
+                ids -> namedParameterJdbcTemplate.update(DELETE_LEMMAS_SQL, new MapSqlParameterSource("ids", ids)));
+        jdbcTemplate.update(DELETE_SITE_SQL, siteId);
+        log.info("Удалён сайт site_id: {}, страниц: {}, лемм: {} за {} мс",
+                siteId, pages, lemmas, System.currentTimeMillis() - start);
+    }
+
+    private int deleteChunks(String selectSql, int siteId, ChunkDeleter deleter) {
+        int chunkSize = lemmaSettings.getDeleteChunkSize();
+        int deleted = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Integer> ids = jdbcTemplate.queryForList(selectSql, Integer.class, siteId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleter.delete(ids);
+            deleted += ids.size();
+        }
+        return deleted;
+    }
+
+    private interface ChunkDeleter {
+        void delete(List<Integer> ids);
+    }
+}
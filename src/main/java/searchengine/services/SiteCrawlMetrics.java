@@ -0,0 +1,185 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.*;
+import lombok.Getter;
+import searchengine.dto.statistics.SiteIndexingStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Метрики одного обхода сайта. Счётчики и таймеры публикуются в Micrometer
+ * с тегом {@code site}; датчики очередей живут, пока идёт обход.
+ * <p>
+ * Счётчики Micrometer накапливаются за все обходы сайта, поэтому для
+ * /api/indexingStatus тот же обход считается ещё и отдельно, с нуля.
+ */
+public class SiteCrawlMetrics {
+
+    private final MeterRegistry registry;
+    @Getter
+    private final String site;
+    private final long startedAt = System.currentTimeMillis();
+    private final Counter pagesFetched;
+    private final Counter pagesSaved;
+    private final Counter pagesDuplicate;
+    private final Counter bytesDownloaded;
+    private final Timer fetchLatency;
+    private final Timer persistLatency;
+    private final LongAdder runFetched = new LongAdder();
+    private final LongAdder runSaved = new LongAdder();
+    private final LongAdder runDuplicates = new LongAdder();
+    private final LongAdder runBytes = new LongAdder();
+    private final LongAdder runFetchNanos = new LongAdder();
+    private final LongAdder runFetches = new LongAdder();
+    private final LongAdder runPersistNanos = new LongAdder();
+    private final LongAdder runPersists = new LongAdder();
+    private final AtomicInteger activeFetches = new AtomicInteger();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Integer>> queues = new ConcurrentHashMap<>();
+    private final List<Meter> gauges = new ArrayList<>();
+    private volatile long finishedAt;
+    @Getter
+    private volatile String lastError;
+
+    SiteCrawlMetrics(MeterRegistry registry, String site) {
+        this.registry = registry;
+        this.site = site;
+        this.pagesFetched = registry.counter("crawler.pages.fetched", "site", site);
+        this.pagesSaved = registry.counter("crawler.pages.saved", "site", site);
+        this.pagesDuplicate = registry.counter("crawler.pages.duplicate", "site", site);
+        this.bytesDownloaded = registry.counter("crawler.bytes.downloaded", "site", site);
+        this.fetchLatency = Timer.builder("crawler.fetch.latency").tag("site", site).register(registry);
+        this.persistLatency = Timer.builder("crawler.persist.latency").tag("site", site).register(registry);
+        gauges.add(Gauge.builder("crawler.fetch.active", activeFetches, AtomicInteger::get).tag("site", site).register(registry));
+    }
+
+    /**
+     * Публикует размер очереди конвейера как датчик {@code crawler.queue.size}.
+     */
+    public void registerQueue(String name, Supplier<Integer> size) {
+        queues.put(name, size);
+        synchronized (gauges) {
+            gauges.add(Gauge.builder("crawler.queue.size", size, s -> s.get())
+                    .tag("site", site).tag("queue", name).register(registry));
+        }
+    }
+
+    public void fetchStarted() {
+        activeFetches.incrementAndGet();
+    }
+
+    public void fetchFinished(long startNanos, long bytes) {
+        activeFetches.decrementAndGet();
+        long nanos = System.nanoTime() - startNanos;
+        fetchLatency.record(nanos, TimeUnit.NANOSECONDS);
+        runFetchNanos.add(nanos);
+        runFetches.increment();
+        if (bytes >= 0) {
+            pagesFetched.increment();
+            bytesDownloaded.increment(bytes);
+            runFetched.increment();
+            runBytes.add(bytes);
+        }
+    }
+
+    public void pagesSaved(int count, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        persistLatency.record(nanos, TimeUnit.NANOSECONDS);
+        pagesSaved.increment(count);
+        runPersistNanos.add(nanos);
+        runPersists.increment();
+        runSaved.add(count);
+    }
+
+    /**
+     * Страница не сохранена как почти полный дубликат уже сохранённой.
+     */
+    public void duplicate() {
+        pagesDuplicate.increment();
+        runDuplicates.increment();
+    }
+
+    public void error(String type) {
+        errors.computeIfAbsent(type, key -> new LongAdder()).increment();
+        registry.counter("crawler.errors", "site", site, "type", type).increment();
+    }
+
+    /**
+     * Ошибка отдельной страницы: считается и запоминается как последняя.
+     */
+    public void error(String type, String message) {
+        error(type);
+        lastError = message;
+    }
+
+    public long errorCount() {
+        long count = 0;
+        for (LongAdder adder : errors.values()) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Сколько страниц записано за этот обход.
+     */
+    public long savedCount() {
+        return runSaved.sum();
+    }
+
+    /**
+     * Сколько всего событий было за обход; растёт, пока обход продвигается.
+     */
+    public long events() {
+        return runFetched.sum() + runSaved.sum() + runDuplicates.sum() + errorCount();
+    }
+
+    /**
+     * Снимает датчики очередей: после обхода они бы показывали пустые очереди.
+     */
+    public void finish() {
+        finishedAt = System.currentTimeMillis();
+        synchronized (gauges) {
+            gauges.forEach(registry::remove);
+            gauges.clear();
+        }
+        queues.clear();
+    }
+
+    public SiteIndexingStatus toStatus() {
+        long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+        double seconds = Math.max(1, end - startedAt) / 1000.0;
+        SiteIndexingStatus status = new SiteIndexingStatus();
+        status.setSite(site);
+        status.setRunning(finishedAt == 0);
+        status.setElapsedMs(end - startedAt);
+        status.setPagesFetched(runFetched.sum());
+        status.setPagesSaved(runSaved.sum());
+        status.setBytesDownloaded(runBytes.sum());
+        status.setFetchedPerSecond(runFetched.sum() / seconds);
+        status.setSavedPerSecond(runSaved.sum() / seconds);
+        status.setMeanFetchMs(meanMs(runFetchNanos, runFetches));
+        status.setMeanPersistMs(meanMs(runPersistNanos, runPersists));
+        status.setActiveFetches(activeFetches.get());
+        Map<String, Integer> queueSizes = new TreeMap<>();
+        queues.forEach((name, size) -> queueSizes.put(name, size.get()));
+        status.setQueues(queueSizes);
+        Map<String, Long> errorCounts = new TreeMap<>();
+        errors.forEach((type, count) -> errorCounts.put(type, count.sum()));
+        status.setErrors(errorCounts);
+        return status;
+    }
+
+    private static double meanMs(LongAdder nanos, LongAdder count) {
+        long n = count.sum();
+        return n == 0 ? 0 : nanos.sum() / (double) n / 1_000_000;
+    }
+}
@@ -0,0 +1,119 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.SiteModel;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пишет в таблицу site ход индексации сайтов, которые сейчас обходятся.
+ * <p>
+ * События обхода (загрузки, записи, ошибки страниц) копятся в памяти в
+ * {@link SiteCrawlMetrics}. Раз в {@code statusHeartbeat} мс у сайтов, где
+ * с прошлого раза что-то произошло, одним пакетным update обновляются
+ * status_time и last_error. Статус сайта heartbeat не трогает: ошибка отдельной
+ * страницы попадает в last_error, а сайт при инкрементальной индексации
+ * остаётся INDEXED и доступен поиску.
+ */
+@Slf4j
+@Component
+public class SiteProgressTracker {
+
+    private static final String UPDATE_SITE_PROGRESS_SQL = "UPDATE site SET status_time = ?, last_error = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, TrackedSite> sites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public SiteProgressTracker(CrawlerSettings crawlerSettings, JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        long interval = Math.max(1, crawlerSettings.getStatusHeartbeat());
+        heartbeat.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void track(SiteModel siteModel, SiteCrawlMetrics metrics) {
+        sites.put(siteModel.getId(), new TrackedSite(siteModel, metrics));
+    }
+
+    /**
+     * Перестаёт следить за сайтом и переносит итог обхода в {@code siteModel},
+     * чтобы он записался вместе с окончательным статусом. Ждёт идущий heartbeat,
+     * так что запоздавший update не перезапишет окончательное значение.
+     */
+    public synchronized void untrack(SiteModel siteModel) {
+        TrackedSite site = sites.remove(siteModel.getId());
+        if (site != null) {
+            siteModel.setStatusTime(LocalDateTime.now());
+            siteModel.setLastError(site.lastError());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    private synchronized void flush() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Integer, TrackedSite> entry : sites.entrySet()) {
+            TrackedSite site = entry.getValue();
+            long events = site.metrics().events();
+            if (events != site.flushedEvents) {
+                site.flushedEvents = events;
+                args.add(new Object[]{now, site.lastError(), entry.getKey()});
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SITE_PROGRESS_SQL, args);
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи хода индексации: {}", e.getMessage());
+        }
+    }
+
+    private static final class TrackedSite {
+        private final SiteModel siteModel;
+        private final SiteCrawlMetrics metrics;
+        /**
+         * Читается и пишется только потоком heartbeat.
+         */
+        private long flushedEvents;
+
+        private TrackedSite(SiteModel siteModel, SiteCrawlMetrics metrics) {
+            this.siteModel = siteModel;
+            this.metrics = metrics;
+        }
+
+        private SiteCrawlMetrics metrics() {
+            return metrics;
+        }
+
+        /**
+         * Последняя ошибка страницы с числом таких ошибок; без ошибок — прежнее значение сайта.
+         */
+        private String lastError() {
+            String error = metrics.getLastError();
+            if (error == null) {
+                return siteModel.getLastError();
+            }
+            return "Ошибок страниц: " + metrics.errorCount() + ", последняя: " + error;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package searchengine.services;
+
+import java.time.Instant;
+
+/**
+ * Адрес из sitemap.xml.
+ *
+ * @param lastModified значение {@code <lastmod>}; {@code null}, если его нет или оно не разобрано
+ */
+public record SitemapEntry(String url, Instant lastModified) {
+}
@@ -0,0 +1,191 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает sitemap.xml сайта потоковым разбором StAX, не загружая файл в память
+ * целиком. Поддерживаются индексы sitemap и файлы, сжатые gzip.
+ * <p>
+ * Файлы берутся из строк Sitemap в robots.txt, а если их нет — {@code /sitemap.xml}
+ * в корне сайта. Всего читается не больше {@code max-sitemap-files} файлов.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SitemapService {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+    private final CrawlerSettings crawlerSettings;
+    private final PageFetcher pageFetcher;
+
+    /**
+     * Передаёт адреса из sitemap сайта в {@code consumer}, пока он возвращает {@code true}.
+     *
+     * @return сколько адресов прочитано
+     */
+    public int read(String siteUrl, List<String> sitemapUrls, Predicate<SitemapEntry> consumer) {
+        Deque<String> files = new ArrayDeque<>(sitemapUrls.isEmpty() ? List.of(origin(siteUrl) + "/sitemap.xml") : sitemapUrls);
+        Set<String> seen = new HashSet<>(files);
+        int read = 0;
+        int entries = 0;
+        while (!files.isEmpty() && read < crawlerSettings.getMaxSitemapFiles()) {
+            String file = files.poll();
+            read++;
+            try {
+                FileResult result = readFile(file, consumer, child -> {
+                    if (seen.add(child)) {
+                        files.add(child);
+                    }
+                });
+                entries += result.entries();
+                if (result.stopped()) {
+                    break;
+                }
+            } catch (IOException | XMLStreamException | IllegalArgumentException e) {
+                log.warn("Не удалось прочитать sitemap: {} {}", file, e.getMessage());
+            }
+        }
+        if (!files.isEmpty()) {
+            log.warn("Прочитано только {} файлов sitemap для сайта: {}, пропущено: {}", read, siteUrl, files.size());
+        }
+        log.info("Адресов в sitemap: {} для сайта: {}", entries, siteUrl);
+        return entries;
+    }
+
+    private FileResult readFile(String url, Predicate<SitemapEntry> consumer, Consumer<String> childSitemaps)
+            throws IOException, XMLStreamException {
+        try (PageFetcher.StreamResponse response = pageFetcher.open(url)) {
+            if (response.code() != 200) {
+                log.info("sitemap не найден: {} код: {}", url, response.code());
+                return new FileResult(0, false);
+            }
+            InputStream body = decompress(response.body());
+            XMLStreamReader reader = createFactory().createXMLStreamReader(body);
+            try {
+                return parse(reader, consumer, childSitemaps);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private FileResult parse(XMLStreamReader reader, Predicate<SitemapEntry> consumer,
+                             Consumer<String> childSitemaps) throws XMLStreamException {
+        int entries = 0;
+        String loc = null;
+        String lastmod = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (!isSitemapElement(reader)) {
+                continue;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "url", "sitemap" -> {
+                        loc = null;
+                        lastmod = null;
+                    }
+                    case "loc" -> loc = reader.getElementText().trim();
+                    case "lastmod" -> lastmod = reader.getElementText().trim();
+                    default -> {
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && loc != null && !loc.isEmpty()) {
+                if (reader.getLocalName().equals("sitemap")) {
+                    childSitemaps.accept(loc);
+                } else if (reader.getLocalName().equals("url")) {
+                    entries++;
+                    if (!consumer.test(new SitemapEntry(loc, parseLastmod(lastmod)))) {
+                        return new FileResult(entries, true);
+                    }
+                }
+            }
+        }
+        return new FileResult(entries, false);
+    }
+
+    /**
+     * Элемент самого sitemap, а не расширения вроде {@code <image:loc>} или
+     * {@code <video:content_loc>}: у расширений своё пространство имён. Элементы
+     * без пространства имён тоже принимаются — так пишут некоторые сайты.
+     */
+    private static boolean isSitemapElement(XMLStreamReader reader) {
+        if (!reader.isStartElement() && !reader.isEndElement()) {
+            return false;
+        }
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || namespace.equals(SITEMAP_NAMESPACE);
+    }
+
+    /**
+     * Файлы .xml.gz распознаются по сигнатуре gzip, а не по расширению.
+     */
+    private static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * {@code <lastmod>} в формате W3C Datetime: дата или дата со временем и часовым поясом.
+     */
+    static Instant parseLastmod(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static String origin(String siteUrl) {
+        URI uri = URI.create(siteUrl);
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    private record FileResult(int entries, boolean stopped) {
+    }
+}
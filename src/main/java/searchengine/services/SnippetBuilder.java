@@ -0,0 +1,96 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.jsoup.nodes.Entities.escape;
+
+/**
+ * Вырезает из текста страницы фрагмент вокруг первых совпадений с леммами запроса
+ * и выделяет совпавшие слова тегом {@code <b>}.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SnippetBuilder {
+
+    private static final Pattern WORD = Pattern.compile("[a-zA-Zа-яА-ЯёЁ]+");
+    private static final int MAX_MATCHES = 20;
+
+    private final LemmaFinder lemmaFinder;
+    private final SearchSettings searchSettings;
+
+    public String build(String text, Set<String> queryLemmas) {
+        int length = searchSettings.getSnippetLength();
+        List<int[]> matches = findMatches(text, queryLemmas);
+        if (matches.isEmpty()) {
+            return escape(cut(text, 0, length));
+        }
+        int[] first = matches.get(0);
+        int start = Math.min(first[0], wordStart(text, Math.max(0, first[0] - length / 4)));
+        int end = Math.max(first[1], wordEnd(text, Math.min(text.length(), start + length)));
+
+        StringBuilder snippet = new StringBuilder(length + 32);
+        if (start > 0) {
+            snippet.append("...");
+        }
+        int position = start;
+        for (int[] match : matches) {
+            if (match[0] < start) {
+                continue;
+            }
+            if (match[1] > end) {
+                break;
+            }
+            snippet.append(escape(text.substring(position, match[0])))
+                    .append("<b>").append(escape(text.substring(match[0], match[1]))).append("</b>");
+            position = match[1];
+        }
+        snippet.append(escape(text.substring(position, end)));
+        if (end < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private List<int[]> findMatches(String text, Set<String> queryLemmas) {
+        List<int[]> matches = new ArrayList<>();
+        Map<String, Boolean> checked = new HashMap<>();
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find() && matches.size() < MAX_MATCHES) {
+            String word = matcher.group().toLowerCase(Locale.ROOT).replace('ё', 'е');
+            if (checked.computeIfAbsent(word, w -> queryLemmas.contains(lemmaFinder.toLemma(w)))) {
+                matches.add(new int[]{matcher.start(), matcher.end()});
+            }
+        }
+        return matches;
+    }
+
+    private String cut(String text, int start, int length) {
+        if (text.length() <= length) {
+            return text;
+        }
+        return text.substring(start, wordEnd(text, start + length)) + "...";
+    }
+
+    private int wordStart(String text, int index) {
+        if (index == 0) {
+            return 0;
+        }
+        int space = text.indexOf(' ', index);
+        return space < 0 ? index : space + 1;
+    }
+
+    private int wordEnd(String text, int index) {
+        if (index >= text.length()) {
+            return text.length();
+        }
+        int space = text.lastIndexOf(' ', index);
+        return space <= 0 ? index : space;
+    }
+}
@@ -2,126 +2,254 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.IndexingResponse;
 import searchengine.dto.statistics.UrlPage;
 import searchengine.model.PageModel;
+import searchengine.model.PageValidators;
 import searchengine.model.SiteModel;
 import searchengine.model.Status;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Service
 @Slf4j
-@Transactional
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class StartIndexingServer implements IndexingService<IndexingResponse>{
 
     private final SitesList sitesList;
+    private final CrawlerSettings crawlerSettings;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final AtomicBoolean isIndexing = new AtomicBoolean(false);
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * Потоки сайтов лишь планируют обход, работу выполняет общий {@link CrawlScheduler},
+     * поэтому все сайты запускаются сразу и делят его потоки.
+     */
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private volatile CompletableFuture<Void> currentRun;
     private final PageService pageService;
+    private final LemmaService lemmaService;
+    private final PostingsCache postingsCache;
+    private final LemmaFinder lemmaFinder;
+    private final FetchExecutor fetchExecutor;
+    private final HostPolitenessScheduler politeness;
+    private final RobotsTxtService robotsTxtService;
+    private final CrawlMetrics crawlMetrics;
+    private final SitemapService sitemapService;
+    private final PageFetcher pageFetcher;
+    private final CrawlScheduler crawlScheduler;
+    private final SiteCleanupService siteCleanupService;
+    private final PageWriter pageWriter;
+    private final SiteProgressTracker siteProgressTracker;
 
-    @Transactional
     @Override
-    public synchronized IndexingResponse startIndexing() {
+    public IndexingResponse startIndexing() {
         log.info("StartIndexing = {}", isIndexing);
-        if (isIndexing.get()) {
+        if (!isIndexing.compareAndSet(false, true)) {
             return createErrorResponse("Индексация уже запущена");
         }
-        isIndexing.set(true);
-        log.info("StartIndexing = {}", isIndexing);
-        List<Site> sites = sitesList.getSites();
-        for (Site site : sites) {
-            executorService.submit(() -> indexSite(site));
+        // после остановки потоки прошлого запуска ещё дописывают свои сайты
+        CompletableFuture<Void> previousRun = currentRun;
+        if (previousRun != null && !previousRun.isDone()) {
+            isIndexing.set(false);
+            return createErrorResponse("Предыдущая индексация ещё останавливается, повторите позже");
         }
+        log.info("StartIndexing = {}", isIndexing);
+        CompletableFuture<Void> run = CompletableFuture.allOf(sitesList.getSites().stream()
+                .map(site -> CompletableFuture.runAsync(() -> indexSite(site), executorService))
+                .toArray(CompletableFuture[]::new));
+        currentRun = run;
+        run.whenComplete((result, e) -> {
+            if (currentRun == run && isIndexing.compareAndSet(true, false)) {
+                log.info("Индексация всех сайтов завершена");
+            }
+        });
         return createSuccessResponse();
     }
 
-    @Transactional
     @Override
-    public synchronized IndexingResponse stopIndexing() {
-        if (isIndexing.get()) {
-            isIndexing.set(false);
+    public IndexingResponse stopIndexing() {
+        if (isIndexing.compareAndSet(true, false)) {
             return createSuccessResponse();
         }
         return createErrorResponse("Индексация не запущена");
     }
 
-    @Transactional
+    /**
+     * Переиндексирует одну страницу без обхода: загружает её заново и применяет
+     * к индексу только разницу между прежним и новым набором лемм.
+     * HTTP-запрос выполняется вне транзакции, запись — в одной транзакции.
+     */
     @Override
-    public synchronized IndexingResponse indexPage(UrlPage url) {
-            if (!isValidUrl(url.getUrl())) {
-            isIndexing.set(false);
+    public IndexingResponse indexPage(UrlPage url) {
+        Site site = null;
+        String pageUrl = null;
+        if (url.getUrl() != null && isValidUrl(url.getUrl())) {
+            for (Site candidate : sitesList.getSites()) {
+                pageUrl = createUrlNormalizer(candidate.getUrl()).normalize(url.getUrl());
+                if (pageUrl != null) {
+                    site = candidate;
+                    break;
+                }
+            }
+        }
+        if (site == null) {
             log.error("Page not found = {}", url);
             return createErrorResponse("Данная страница находится за пределами сайтов" +
                     " указанных в конфигурационном файле");
         }
-        isIndexing.set(true);
-        if (pageRepository.existsByPath(url.getUrl())) {
-            log.info("Indexing page = {}", url);
-            PageModel pageModel = pageRepository.findByPath(url.getUrl());
-            pageRepository.delete(pageModel);
-            log.info("Page model delete for URL: {}", url);
-
-            PagesIndexing(pageModel.getSite(), url.getUrl());
-            log.info("indexPage = {}", url);
-        } else {
-            SiteModel siteModel = new SiteModel();
-            siteModel.setUrl(url.getUrl());
-            siteRepository.save(siteModel);
-            IndexingPages indexingPages = new IndexingPages(isIndexing, url.getUrl(), pageRepository, siteRepository, siteModel, pageService);
-            indexingPages.compute();
+        SiteModel siteModel = findOrCreateSite(site);
+        String pagePath = createUrlNormalizer(site.getUrl()).toPath(pageUrl);
+        PageModel pageModel = pageRepository.findBySiteAndPath(siteModel, pagePath);
+        long maxBodySize = site.getMaxBodySize() != null ? site.getMaxBodySize() : crawlerSettings.getMaxBodySize();
+        PageFetcher.FetchResponse response;
+        try {
+            response = pageFetcher.fetch(pageUrl, null, maxBodySize);
+        } catch (IOException e) {
+            log.error("Error URL: {} {}", pageUrl, e.getMessage());
+            return createErrorResponse("Не удалось загрузить страницу: " + e.getMessage());
+        }
+        if (response.code() >= 400 || response.body() == null) {
+            if (pageModel != null) {
+                lemmaService.removePages(List.of(pageModel.getId()));
+                postingsCache.invalidateSite(siteModel.getId());
+                log.info("Страница удалена из индекса: {} код: {}", pageUrl, response.code());
+            }
+            return createErrorResponse("Страница недоступна, код ответа: " + response.code());
+        }
+        String contentHash = CrawlPipeline.sha256(response.body());
+        if (pageModel != null && contentHash.equals(pageModel.getContentHash())) {
+            log.info("Содержимое страницы не изменилось: {}", pageUrl);
+            return createSuccessResponse();
+        }
+        Document document;
+        try {
+            document = Jsoup.parse(new ByteArrayInputStream(response.body()), response.charset(), pageUrl);
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка разбора страницы: {} {}", pageUrl, e.getMessage());
+            return createErrorResponse("Не удалось разобрать страницу: " + e.getMessage());
+        }
+        Map<String, Integer> lemmas = lemmaFinder.collectLemmas(document.text());
+        if (pageModel == null) {
+            pageModel = new PageModel();
+            pageModel.setSite(siteModel);
+            pageModel.setPath(pagePath);
         }
+        pageModel.setCode(response.code());
+        pageModel.setContent(CrawlPipeline.storedContent(document, crawlerSettings.getContentStorage()));
+        pageModel.setEtag(response.etag());
+        pageModel.setLastModified(response.lastModified());
+        pageModel.setContentHash(contentHash);
+        pageModel.setSimhash(NearDuplicateIndex.fingerprint(document));
+        pageModel.setLemmaCount(lemmas.size());
+        pageService.reindexPage(pageModel, lemmas);
+        postingsCache.invalidateSite(siteModel.getId());
+        log.info("indexPage = {} лемм: {}", pageUrl, lemmas.size());
         return createSuccessResponse();
     }
 
-    @Transactional
+    /**
+     * Сайт из конфигурации, если он ещё ни разу не индексировался, заводится сразу
+     * проиндексированным: в нём будут только добавленные вручную страницы.
+     */
+    private SiteModel findOrCreateSite(Site site) {
+        SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
+        if (siteModel == null) {
+            siteModel = new SiteModel();
+            siteModel.setUrl(site.getUrl());
+            siteModel.setName(site.getName());
+            siteModel.setStatus(Status.INDEXED);
+            siteRepository.save(siteModel);
+        }
+        return siteModel;
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return isIndexing.get();
+    }
+
     public void indexSite(Site site) {
         try {
             if (!isIndexing.get()) {
                 log.info("IndexSite isIndexing value: {}", isIndexing.get());
                 return;
             }
+            robotsTxtService.evict(site.getUrl());
             SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
-            if (siteModel != null) {
-                if (!TransactionSynchronizationManager.isActualTransactionActive()) {
-                    log.info("Не найдена активная транзакция! = {}", siteModel);
+            boolean resume = canResume(siteModel);
+            boolean incremental = !resume && crawlerSettings.isIncremental() && siteModel != null;
+            if (resume) {
+                siteModel.setName(site.getName());
+                pageService.updateSiteStatus(siteModel, Status.INDEXING, null);
+                log.info("Продолжение прерванной индексации сайта = {}", siteModel);
+            } else if (incremental) {
+                // прежний индекс остаётся в силе: проиндексированный сайт не пропадает из поиска на время обхода
+                siteModel.setName(site.getName());
+                pageService.updateSiteStatus(siteModel,
+                        siteModel.getStatus() == Status.INDEXED ? Status.INDEXED : Status.INDEXING, null);
+                log.info("Инкрементальная индексация сайта = {}", siteModel);
+            } else {
+                if (siteModel != null) {
+                    // сайт сразу пропадает из поиска, а строки удаляются порциями в фоне
+                    pageService.updateSiteStatus(siteModel, Status.INDEXING, null);
+                    lemmaService.discardSite(siteModel);
+                    postingsCache.invalidateSite(siteModel.getId());
+                    DiskFrontier.delete(frontierDir(siteModel));
+                    if (!awaitCleanup(siteModel)) {
+                        return;
+                    }
                 }
-                pageRepository.deleteBySite(siteModel);
-                siteRepository.delete(siteModel);
+                siteModel = new SiteModel();
+                siteModel.setUrl(site.getUrl());
+                siteModel.setName(site.getName());
+                siteModel.setStatus(Status.INDEXING);
+                siteRepository.save(siteModel);
+                log.info("siteNews = {}", siteModel);
             }
-            siteModel = new SiteModel();
-            siteModel.setUrl(site.getUrl());
-            siteModel.setName(site.getName());
-            siteModel.setStatus(Status.INDEXING);
-            siteRepository.save(siteModel);
-            log.info("siteNews = {}", siteModel);
 
-            PagesIndexing(siteModel, site.getUrl());
+            String siteError = PagesIndexing(siteModel, site.getUrl(), incremental, resume, createFrontier(siteModel, resume));
 
-            if(isIndexing.get()) {
+            if(isIndexing.get() && siteError == null) {
                 siteModel.setStatus(Status.INDEXED);
+            } else if (isIndexing.get()) {
+                log.warn("Сайт не проиндексирован: {} {}", site.getUrl(), siteError);
+                siteModel.setStatus(Status.FAILED);
+                siteModel.setLastError(siteError);
+            } else if (incremental && siteModel.getStatus() == Status.INDEXED) {
+                siteModel.setLastError("Индексация остановлена пользователем");
             } else {
                 siteModel.setStatus(Status.FAILED);
                 siteModel.setLastError("Индексация остановлена пользователем");
             }
             siteRepository.save(siteModel);
+            postingsCache.invalidateSite(siteModel.getId());
         } catch (Exception e) {
             SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
             log.info("siteException = {}", siteModel);
@@ -131,21 +259,172 @@ public class StartIndexingServer implements IndexingService<IndexingResponse>{
                 log.error("Error: = {}", e.getMessage());
                 siteRepository.save(siteModel);
             } else {
-                System.out.println("Сайт не найден по URL = " + site.getUrl());
+                log.warn("Сайт не найден по URL = {}", site.getUrl());
                 log.error("Site not found URL = {}", e.getMessage());
             }
         }
     }
 
-    private void PagesIndexing(SiteModel siteModel, String url) {
-        if(!isIndexing.get())
-            return;
-        ForkJoinPool pool = new ForkJoinPool();
+    /**
+     * Ждёт удаления прежних данных сайта. Если удаление не удалось, сайт
+     * помечается FAILED: новая индексация поверх недоудалённых данных не начинается.
+     */
+    private boolean awaitCleanup(SiteModel siteModel) {
         try {
-            pool.invoke(new IndexingPages(isIndexing, url, pageRepository, siteRepository, siteModel, pageService));
+            siteCleanupService.deleteSite(siteModel).join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Не удалось удалить прежние данные сайта: {} {}", siteModel.getUrl(), cause.getMessage(), cause);
+            pageService.updateSiteStatus(siteModel, Status.FAILED,
+                    "Не удалось удалить прежние данные сайта: " + cause.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return ошибка, из-за которой сайт считается недоступным: не загрузилась главная
+     * страница или обход сайта, у которого ещё нет страниц, не записал ни одной;
+     * {@code null}, если обход прошёл
+     */
+    private String PagesIndexing(SiteModel siteModel, String url, boolean incremental, boolean resume, CrawlFrontier frontier) {
+        if(!isIndexing.get()) {
+            frontier.close();
+            return null;
+        }
+        UrlNormalizer urlNormalizer = createUrlNormalizer(siteModel.getUrl());
+        Map<String, PageValidators> storedPages = new HashMap<>();
+        if (incremental) {
+            pageRepository.findValidatorsBySite(siteModel)
+                    .forEach(page -> storedPages.put(urlNormalizer.toUrl(page.getPath()), page));
+        }
+        Set<String> unindexedUrls = new HashSet<>();
+        if (resume) {
+            lemmaService.removeUnindexedPages(siteModel).forEach(path -> unindexedUrls.add(urlNormalizer.toUrl(path)));
+        }
+        Collection<String> knownPaths = incremental ? storedPages.keySet()
+                : pageRepository.findPathsBySite(siteModel).stream().map(urlNormalizer::toUrl).toList();
+        VisitedUrlSet visitedUrls = createVisitedUrls(siteModel, knownPaths);
+        String startUrl = Objects.requireNonNullElse(urlNormalizer.normalize(url), url);
+        // адреса из журнала очереди уже либо обойдены, либо ждут своей очереди;
+        // удалённые недописанные страницы возвращаются в очередь
+        if (resume && frontier instanceof DiskFrontier diskFrontier) {
+            diskFrontier.forEachUrl(visitedUrls::add);
+            int requeued = diskFrontier.requeue(unindexedUrls);
+            log.info("Снова в очереди страниц без индекса: {} для сайта: {}", requeued, siteModel.getUrl());
+        }
+        CrawlContext context = CrawlContext.builder()
+                .isIndexing(isIndexing)
+                .siteModel(siteModel)
+                .site(findSiteConfig(siteModel.getUrl()))
+                .robotsRules(crawlerSettings.isRespectRobotsTxt() ? robotsTxtService.getRules(url) : RobotsRules.EMPTY)
+                .visitedUrls(visitedUrls)
+                .urlNormalizer(urlNormalizer)
+                .nearDuplicates(createNearDuplicateIndex(siteModel, urlNormalizer, incremental || resume))
+                .frontier(frontier)
+                .savedPaths(resume ? new HashSet<>(knownPaths) : Set.of())
+                .storedPages(storedPages)
+                .pageWriter(pageWriter)
+                .lemmaFinder(lemmaFinder)
+                .crawlerSettings(crawlerSettings)
+                .fetchExecutor(fetchExecutor)
+                .politeness(politeness)
+                .sitemapService(sitemapService)
+                .pageFetcher(pageFetcher)
+                .crawlScheduler(crawlScheduler)
+                .metrics(crawlMetrics.start(siteModel))
+                .build();
+        context.getVisitedUrls().add(startUrl);
+        siteProgressTracker.track(siteModel, context.getMetrics());
+        CrawlPipeline pipeline = new CrawlPipeline(context);
+        boolean completed = false;
+        try {
+            completed = pipeline.run(startUrl);
         } finally {
-            pool.shutdown();
+            if (completed) {
+                frontier.discard();
+            } else {
+                frontier.close();
+            }
+            siteProgressTracker.untrack(siteModel);
+            context.getMetrics().finish();
+            lemmaService.flushSite(siteModel);
+            if (incremental) {
+                lemmaService.removeUnusedLemmas(siteModel);
+            }
+        }
+        if (pipeline.getStartPageError() != null) {
+            return "Ошибка индексации: главная страница сайта не доступна: " + pipeline.getStartPageError();
+        }
+        if (knownPaths.isEmpty() && context.getMetrics().savedCount() == 0) {
+            String lastError = context.getMetrics().getLastError();
+            return "Ошибка индексации: сайт не доступен" + (lastError != null ? ": " + lastError : "");
         }
+        return null;
+    }
+
+    private Site findSiteConfig(String url) {
+        return sitesList.getSites().stream()
+                .filter(site -> url.startsWith(site.getUrl()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private UrlNormalizer createUrlNormalizer(String siteUrl) {
+        return new UrlNormalizer(siteUrl, crawlerSettings.getIgnoredQueryParameters());
+    }
+
+    /**
+     * Отпечатки страниц для поиска почти одинаковых; при продолжении обхода
+     * и инкрементальной индексации в них загружаются уже сохранённые страницы.
+     */
+    private NearDuplicateIndex createNearDuplicateIndex(SiteModel siteModel, UrlNormalizer urlNormalizer,
+                                                        boolean loadStored) {
+        if (crawlerSettings.getNearDuplicateDistance() < 0) {
+            return null;
+        }
+        NearDuplicateIndex index = new NearDuplicateIndex(crawlerSettings.getNearDuplicateDistance());
+        if (loadStored) {
+            pageRepository.findFingerprintsBySite(siteModel).forEach(page -> index.add(urlNormalizer.toUrl(page.getPath()), page.getSimhash()));
+        }
+        return index;
+    }
+
+    /**
+     * Прерванный обход можно продолжить, если очередь обхода хранится на диске
+     * и от прошлого запуска осталась её контрольная точка.
+     */
+    private boolean canResume(SiteModel siteModel) {
+        return siteModel != null && siteModel.getStatus() != Status.INDEXED
+                && crawlerSettings.getFrontier() == CrawlerSettings.FrontierMode.DISK
+                && DiskFrontier.exists(frontierDir(siteModel));
+    }
+
+    private Path frontierDir(SiteModel siteModel) {
+        return Path.of(crawlerSettings.getFrontierDir(), String.valueOf(siteModel.getId()));
+    }
+
+    /**
+     * Очередь обхода сайта: в файле при {@code frontier: DISK}, иначе в памяти.
+     */
+    private CrawlFrontier createFrontier(SiteModel siteModel, boolean resume) throws IOException {
+        if (crawlerSettings.getFrontier() != CrawlerSettings.FrontierMode.DISK) {
+            return new MemoryFrontier();
+        }
+        return DiskFrontier.open(frontierDir(siteModel), resume);
+    }
+
+    /**
+     * Множество посещённых адресов заполняется из БД один раз на обход,
+     * дальше проверка ссылки не требует запросов к базе.
+     */
+    private VisitedUrlSet createVisitedUrls(SiteModel siteModel, Collection<String> paths) {
+        VisitedUrlSet visitedUrls = crawlerSettings.getVisitedSet() == CrawlerSettings.VisitedSetMode.BLOOM
+                ? new BloomVisitedUrlSet(crawlerSettings.getBloomExpectedUrls(), crawlerSettings.getBloomFalsePositiveRate())
+                : new ConcurrentVisitedUrlSet();
+        paths.forEach(visitedUrls::add);
+        log.info("Загружено посещённых адресов: {} для сайта: {}", paths.size(), siteModel.getUrl());
+        return visitedUrls;
     }
 
     private IndexingResponse createErrorResponse(String error) {
@@ -1,55 +1,106 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.config.StatisticsSettings;
 import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.IndexingResponse;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
+import searchengine.model.SiteCount;
+import searchengine.model.SiteModel;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Статистика собирается тремя агрегатными запросами (сайты, страницы и леммы
+ * по сайтам) и отдаётся из снимка, который живёт {@code cache-ttl} мс во время
+ * индексации и {@code idle-cache-ttl} мс без неё.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final Random random = new Random();
     private final SitesList sites;
+    private final StatisticsSettings statisticsSettings;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexingService<IndexingResponse> indexingService;
+    private volatile Snapshot snapshot;
 
     @Override
     public StatisticsResponse getStatistics() {
-        String[] statuses = { "INDEXED", "FAILED", "INDEXING" };
-        String[] errors = {
-                "Ошибка индексации: главная страница сайта не доступна",
-                "Ошибка индексации: сайт не доступен",
-                ""
-        };
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current.response();
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (!isFresh(current)) {
+                boolean indexing = indexingService.isIndexing();
+                current = new Snapshot(collectStatistics(), System.currentTimeMillis(), indexing);
+                snapshot = current;
+            }
+            return current.response();
+        }
+    }
+
+    /**
+     * Снимок, сделанный во время индексации, устаревает сразу после её окончания.
+     */
+    private boolean isFresh(Snapshot current) {
+        if (current == null) {
+            return false;
+        }
+        boolean indexing = indexingService.isIndexing();
+        long ttl = indexing ? statisticsSettings.getCacheTtl() : statisticsSettings.getIdleCacheTtl();
+        return current.indexing() == indexing && System.currentTimeMillis() - current.createdAt() < ttl;
+    }
+
+    private StatisticsResponse collectStatistics() {
+        Map<String, SiteModel> siteModels = siteRepository.findAll().stream()
+                .collect(Collectors.toMap(SiteModel::getUrl, Function.identity(), (first, second) -> second));
+        Map<Integer, Long> pageCounts = toMap(pageRepository.countPagesBySite());
+        Map<Integer, Long> lemmaCounts = toMap(lemmaRepository.countLemmasBySite());
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingService.isIndexing());
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<Site> sitesList = sites.getSites();
-        for(int i = 0; i < sitesList.size(); i++) {
-            Site site = sitesList.get(i);
+        for (Site site : sites.getSites()) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = random.nextInt(1_000);
-            int lemmas = pages * random.nextInt(1_000);
-            item.setPages(pages);
-            item.setLemmas(lemmas);
-            item.setStatus(statuses[i % 3]);
-            item.setError(errors[i % 3]);
-            item.setStatusTime(System.currentTimeMillis() -
-                    (random.nextInt(10_000)));
-            total.setPages(total.getPages() + pages);
-            total.setLemmas(total.getLemmas() + lemmas);
+            SiteModel siteModel = siteModels.get(site.getUrl());
+            if (siteModel != null) {
+                int pages = pageCounts.getOrDefault(siteModel.getId(), 0L).intValue();
+                int lemmas = lemmaCounts.getOrDefault(siteModel.getId(), 0L).intValue();
+                item.setPages(pages);
+                item.setLemmas(lemmas);
+                item.setStatus(siteModel.getStatus() == null ? "" : siteModel.getStatus().name());
+                item.setError(siteModel.getLastError() == null ? "" : siteModel.getLastError());
+                item.setStatusTime(siteModel.getStatusTime() == null ? 0
+                        : siteModel.getStatusTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                total.setPages(total.getPages() + pages);
+                total.setLemmas(total.getLemmas() + lemmas);
+            } else {
+                item.setStatus("");
+                item.setError("");
+            }
             detailed.add(item);
         }
 
@@ -61,4 +112,13 @@ public class StatisticsServiceImpl implements StatisticsService {
         response.setResult(true);
         return response;
     }
+
+    private static Map<Integer, Long> toMap(List<SiteCount> counts) {
+        Map<Integer, Long> result = new HashMap<>();
+        counts.forEach(count -> result.put(count.getSiteId(), count.getCount()));
+        return result;
+    }
+
+    private record Snapshot(StatisticsResponse response, long createdAt, boolean indexing) {
+    }
 }
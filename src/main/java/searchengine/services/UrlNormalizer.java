@@ -0,0 +1,179 @@
+package searchengine.services;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Приводит адреса страниц сайта к одному виду, чтобы варианты одного адреса
+ * не загружались и не сохранялись повторно:
+ * <ul>
+ *     <li>http/https и хост с {@code www.} или без него заменяются на схему и хост сайта из конфигурации;</li>
+ *     <li>отбрасываются фрагмент ({@code #...}), порт по умолчанию и параметры запроса
+ *     из {@code ignored-query-parameters} (метки utm_, gclid и т.п.);</li>
+ *     <li>оставшиеся параметры сортируются, из пути убираются {@code .}/{@code ..},
+ *     повторные и завершающий {@code /}.</li>
+ * </ul>
+ * Адреса других хостов и вне пути сайта считаются чужими.
+ */
+public class UrlNormalizer {
+
+    private final String prefix;
+    private final String bareHost;
+    private final int port;
+    /**
+     * Сайт на порту по умолчанию: тогда http- и https-варианты адреса — один сайт.
+     */
+    private final boolean defaultPorts;
+    private final String basePath;
+    private final List<String> ignoredParameters = new ArrayList<>();
+    private final List<String> ignoredPrefixes = new ArrayList<>();
+
+    /**
+     * @param ignoredParameters имена отбрасываемых параметров; {@code *} в конце означает префикс
+     */
+    public UrlNormalizer(String siteUrl, Collection<String> ignoredParameters) {
+        URI site = URI.create(siteUrl.trim());
+        String scheme = site.getScheme().toLowerCase(Locale.ROOT);
+        String host = site.getHost().toLowerCase(Locale.ROOT);
+        this.port = effectivePort(scheme, site.getPort());
+        this.defaultPorts = port == defaultPort(scheme);
+        this.bareHost = stripWww(host);
+        this.prefix = scheme + "://" + host + (site.getPort() == -1 || site.getPort() == defaultPort(scheme) ? "" : ":" + site.getPort());
+        String path = normalizePath(site.getRawPath());
+        this.basePath = path.equals("/") ? "" : path;
+        for (String parameter : ignoredParameters) {
+            String name = parameter.toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                ignoredPrefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                this.ignoredParameters.add(name);
+            }
+        }
+    }
+
+    /**
+     * @return канонический адрес или {@code null}, если адрес не относится к сайту или не разбирается
+     */
+    public String normalize(String url) {
+        URI uri = parse(url);
+        if (uri == null || uri.getScheme() == null || uri.getHost() == null) {
+            return null;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (!stripWww(host).equals(bareHost)) {
+            return null;
+        }
+        int urlPort = effectivePort(scheme, uri.getPort());
+        if (urlPort != port && !(urlPort == defaultPort(scheme) && defaultPorts)) {
+            return null;
+        }
+        String path = normalizePath(uri.getRawPath());
+        if (!basePath.isEmpty() && !path.equals(basePath) && !path.startsWith(basePath + "/")) {
+            return null;
+        }
+        String query = normalizeQuery(uri.getRawQuery());
+        return prefix + path + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    /**
+     * Путь от корня сайта для канонического адреса — так страница хранится в таблице page.
+     */
+    public String toPath(String url) {
+        if (!url.startsWith(prefix)) {
+            return url;
+        }
+        String path = url.substring(prefix.length());
+        return path.isEmpty() ? "/" : path;
+    }
+
+    /**
+     * Канонический адрес по пути из таблицы page.
+     */
+    public String toUrl(String path) {
+        return prefix + path;
+    }
+
+    private static URI parse(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String trimmed = url.trim();
+        try {
+            return URI.create(trimmed);
+        } catch (IllegalArgumentException e) {
+            try {
+                return URI.create(trimmed.replace(" ", "%20").replace("|", "%7C"));
+            } catch (IllegalArgumentException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String path = rawPath.replaceAll("/{2,}", "/");
+        path = URI.create("http://h" + (path.startsWith("/") ? path : "/" + path)).normalize().getRawPath();
+        while (path.startsWith("/..")) {
+            path = path.substring(3);
+        }
+        if (path.isEmpty()) {
+            return "/";
+        }
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> kept = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int eq = parameter.indexOf('=');
+            String name = (eq < 0 ? parameter : parameter.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isIgnored(name)) {
+                kept.add(parameter);
+            }
+        }
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+
+    private boolean isIgnored(String name) {
+        if (ignoredParameters.contains(name)) {
+            return true;
+        }
+        for (String ignoredPrefix : ignoredPrefixes) {
+            if (name.startsWith(ignoredPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static int defaultPort(String scheme) {
+        return scheme.equals("https") ? 443 : 80;
+    }
+
+    private static int effectivePort(String scheme, int port) {
+        return port == -1 ? defaultPort(scheme) : port;
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.services;
+
+/**
+ * Множество адресов, уже поставленных в обход в рамках одной индексации сайта.
+ */
+public interface VisitedUrlSet {
+
+    /**
+     * Отмечает адрес как посещённый.
+     *
+     * @return {@code true}, если адрес встретился впервые и его нужно обойти
+     */
+    boolean add(String url);
+}
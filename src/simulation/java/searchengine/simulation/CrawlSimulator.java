@@ -0,0 +1,162 @@
+package searchengine.simulation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.Application;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.dto.statistics.IndexingResponse;
+import searchengine.dto.statistics.IndexingStatusResponse;
+import searchengine.dto.statistics.SiteIndexingStatus;
+import searchengine.model.SiteModel;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.CrawlMetrics;
+import searchengine.services.IndexingService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Прогон полной индексации против {@link SyntheticSite} во встроенной H2
+ * (профиль Spring {@code simulation}). По окончании печатает скорость обхода,
+ * пиковое потребление кучи и объём записанного в БД.
+ * <p>
+ * Запуск: {@code mvn -Psimulation compile exec:exec -Dsimulation.args="--simulation.pages=10000"}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CrawlSimulator {
+
+    private static final long POLL_INTERVAL_MS = 500;
+    private static final long PROGRESS_INTERVAL_MS = 5_000;
+    private static final long HEAP_SAMPLE_INTERVAL_MS = 100;
+
+    private final SimulationSettings settings;
+    private final SitesList sitesList;
+    private final IndexingService<IndexingResponse> indexingService;
+    private final CrawlMetrics crawlMetrics;
+    private final SiteRepository siteRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("simulation")
+                .run(args);
+        boolean completed;
+        try {
+            completed = context.getBean(CrawlSimulator.class).run();
+        } finally {
+            context.close();
+        }
+        // пул индексации StartIndexingServer не останавливается вместе с контекстом
+        System.exit(completed ? 0 : 1);
+    }
+
+    public boolean run() throws Exception {
+        SyntheticSite site = new SyntheticSite(settings);
+        site.start();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, HEAP_SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        long startNanos = System.nanoTime();
+        boolean completed;
+        try {
+            indexingService.startIndexing();
+            completed = awaitCrawl(startNanos);
+        } finally {
+            sampler.shutdownNow();
+            site.stop();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        report(site, elapsedMs, heapBefore, peakHeap.get(), completed);
+        return completed;
+    }
+
+    private boolean awaitCrawl(long startNanos) throws InterruptedException {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(settings.getTimeout());
+        long nextProgress = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(POLL_INTERVAL_MS);
+            IndexingStatusResponse status = crawlMetrics.getIndexingStatus(indexingService.isIndexing());
+            if (System.nanoTime() >= nextProgress) {
+                status.getSites().forEach(this::logProgress);
+                nextProgress = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MS);
+            }
+            if (isFinished(status)) {
+                return true;
+            }
+        }
+        log.warn("Обход не закончился за {} мс, останавливаю", settings.getTimeout());
+        indexingService.stopIndexing();
+        return false;
+    }
+
+    private boolean isFinished(IndexingStatusResponse status) {
+        if (status.getSites().size() < sitesList.getSites().size()
+                || status.getSites().stream().anyMatch(SiteIndexingStatus::isRunning)) {
+            return false;
+        }
+        for (Site site : sitesList.getSites()) {
+            SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
+            if (siteModel == null || siteModel.getStatus() == Status.INDEXING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void logProgress(SiteIndexingStatus status) {
+        log.info("{}: загружено {}, сохранено {}, {} стр/с, загрузка {} мс, запись {} мс, очереди {}",
+                status.getSite(), status.getPagesFetched(), status.getPagesSaved(),
+                String.format("%.1f", status.getFetchedPerSecond()), String.format("%.1f", status.getMeanFetchMs()),
+                String.format("%.1f", status.getMeanPersistMs()), status.getQueues());
+    }
+
+    private void report(SyntheticSite site, long elapsedMs, long heapBefore, long peakHeap, boolean completed) {
+        long pages = count("SELECT COUNT(*) FROM page");
+        long contentBytes = count("SELECT COALESCE(SUM(OCTET_LENGTH(content)), 0) FROM page");
+        long lemmas = count("SELECT COUNT(*) FROM lemma");
+        long indexes = count("SELECT COUNT(*) FROM `index`");
+        double seconds = Math.max(1, elapsedMs) / 1000.0;
+        StringBuilder report = new StringBuilder("\n===== Результат прогона =====\n");
+        report.append(String.format("Обход завершён:       %s%n", completed ? "да" : "нет, остановлен по таймауту"));
+        report.append(String.format("Сайт:                 %d страниц, fan-out %d, ~%d байт, задержка %d+%d мс, ошибки %.3f, 503 %.3f%n",
+                settings.getPages(), settings.getFanOut(), settings.getPageSize(), settings.getLatency(),
+                settings.getLatencyJitter(), settings.getErrorRate(), settings.getThrottleRate()));
+        report.append(String.format("Время:                %.1f с%n", seconds));
+        report.append(String.format("Запросов к сайту:     %d (%.1f МБ)%n", site.getRequests(), megabytes(site.getBytesServed())));
+        report.append(String.format("Сохранено страниц:    %d (%.1f стр/с)%n", pages, pages / seconds));
+        report.append(String.format("Пик кучи:             %.1f МБ (до обхода %.1f МБ)%n", megabytes(peakHeap), megabytes(heapBefore)));
+        report.append(String.format("Записано в БД:        page %d строк / %.1f МБ содержимого, lemma %d, index %d%n",
+                pages, megabytes(contentBytes), lemmas, indexes));
+        crawlMetrics.getIndexingStatus(false).getSites().forEach(status ->
+                report.append(String.format("Ошибки %s: %s%n", status.getSite(), status.getErrors())));
+        log.info(report.toString());
+    }
+
+    private long count(String sql) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class);
+        return value == null ? 0 : value;
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.simulation;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "simulation")
+public class SimulationSettings {
+    private int port = 18080;
+    /**
+     * Число страниц синтетического сайта. Страницы образуют дерево
+     * с {@code fanOut} потомками у каждой, так что все они достижимы с главной.
+     */
+    private int pages = 2_000;
+    private int fanOut = 10;
+    /**
+     * Сколько дополнительных ссылок на случайные страницы сайта есть на каждой странице.
+     */
+    private int crossLinks = 5;
+    /**
+     * Примерный размер страницы в байтах.
+     */
+    private int pageSize = 20_000;
+    /**
+     * Задержка ответа сервера в миллисекундах и случайная добавка к ней.
+     */
+    private long latency = 50;
+    private long latencyJitter = 50;
+    /**
+     * Доля страниц, которые всегда отвечают 500.
+     */
+    private double errorRate = 0;
+    /**
+     * Вероятность ответа 503 с Retry-After на любой запрос.
+     */
+    private double throttleRate = 0;
+    /**
+     * Отдавать индекс sitemap со всеми страницами (файлы по {@code sitemapChunk} адресов, сжатые gzip)
+     * и ссылку на него в robots.txt.
+     */
+    private boolean sitemap = false;
+    private int sitemapChunk = 10_000;
+    private int serverThreads = 64;
+    private long seed = 42;
+    /**
+     * Сколько миллисекунд ждать окончания обхода, прежде чем остановить его.
+     */
+    private long timeout = 600_000;
+}
@@ -0,0 +1,220 @@
+package searchengine.simulation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Локальный HTTP-сервер с синтетическим сайтом для нагрузочных прогонов обхода.
+ * <p>
+ * Страница {@code /page/N.html} ссылается на своих потомков в дереве
+ * ({@code N * fanOut + 1 ... N * fanOut + fanOut}) и на {@code crossLinks}
+ * случайных страниц. Содержимое, ссылки и страницы с ошибкой 500 определяются
+ * номером страницы и {@code seed}, поэтому прогоны с одинаковыми настройками
+ * видят один и тот же сайт.
+ * <p>
+ * С {@code sitemap: true} сайт отдаёт {@code /sitemap_index.xml} со ссылками на
+ * сжатые gzip файлы {@code /sitemap-N.xml.gz}, где перечислены все страницы.
+ */
+@Slf4j
+public class SyntheticSite {
+
+    private static final Pattern PAGE_PATH = Pattern.compile("/page/(\\d+)\\.html");
+    private static final Pattern SITEMAP_PATH = Pattern.compile("/sitemap-(\\d+)\\.xml\\.gz");
+    private static final String[] WORDS = {
+            "поиск", "индекс", "страница", "сайт", "текст", "слово", "запрос", "ссылка", "данные", "система",
+            "быстрый", "новый", "большой", "городской", "научный", "работать", "искать", "читать", "писать", "находить",
+            "search", "index", "crawler", "page", "document", "query", "link", "server", "engine", "result"
+    };
+
+    private final SimulationSettings settings;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public SyntheticSite(SimulationSettings settings) {
+        this.settings = settings;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.getPort()), 1024);
+        executor = Executors.newFixedThreadPool(settings.getServerThreads());
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Синтетический сайт запущен: {} страниц на порту {}", settings.getPages(), settings.getPort());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            sleepLatency();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/robots.txt")) {
+                String sitemap = settings.isSitemap() ? "Sitemap: " + origin() + "/sitemap_index.xml\n" : "";
+                send(exchange, 200, "text/plain", "User-agent: *\nAllow: /\n" + sitemap);
+                return;
+            }
+            if (settings.isSitemap() && path.equals("/sitemap_index.xml")) {
+                send(exchange, 200, "application/xml", renderSitemapIndex());
+                return;
+            }
+            Matcher sitemap = SITEMAP_PATH.matcher(path);
+            if (settings.isSitemap() && sitemap.matches()) {
+                sendGzip(exchange, renderSitemap(Integer.parseInt(sitemap.group(1))));
+                return;
+            }
+            int page = pageNumber(path);
+            if (page < 0) {
+                send(exchange, 404, "text/html", "<html><body>Not found</body></html>");
+                return;
+            }
+            if (settings.getThrottleRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.getThrottleRate()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "text/html", "<html><body>Service unavailable</body></html>");
+                return;
+            }
+            if (new Random(settings.getSeed() ^ (page * 31L + 7)).nextDouble() < settings.getErrorRate()) {
+                send(exchange, 500, "text/html", "<html><body>Internal error</body></html>");
+                return;
+            }
+            send(exchange, 200, "text/html; charset=utf-8", render(page));
+        }
+    }
+
+    private int pageNumber(String path) {
+        if (path.isEmpty() || path.equals("/")) {
+            return 0;
+        }
+        Matcher matcher = PAGE_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(matcher.group(1));
+            return page < settings.getPages() ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String render(int page) {
+        Random random = new Random(settings.getSeed() * 1_000_003L + page);
+        StringBuilder html = new StringBuilder(settings.getPageSize() + 1024);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Страница ")
+                .append(page).append("</title></head><body><nav>");
+        for (int i = 1; i <= settings.getFanOut(); i++) {
+            long child = (long) page * settings.getFanOut() + i;
+            if (child < settings.getPages()) {
+                appendLink(html, (int) child);
+            }
+        }
+        for (int i = 0; i < settings.getCrossLinks(); i++) {
+            appendLink(html, random.nextInt(settings.getPages()));
+        }
+        html.append("</nav><main><h1>Страница ").append(page).append("</h1>");
+        while (html.length() < settings.getPageSize()) {
+            html.append("<p>");
+            for (int i = 0; i < 40; i++) {
+                html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            html.append("</p>");
+        }
+        return html.append("</main></body></html>").toString();
+    }
+
+    private String renderSitemapIndex() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (int chunk = 0; chunk * settings.getSitemapChunk() < settings.getPages(); chunk++) {
+            xml.append("<sitemap><loc>").append(origin()).append("/sitemap-").append(chunk).append(".xml.gz</loc></sitemap>\n");
+        }
+        return xml.append("</sitemapindex>\n").toString();
+    }
+
+    private String renderSitemap(int chunk) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        int from = chunk * settings.getSitemapChunk();
+        int to = Math.min(settings.getPages(), from + settings.getSitemapChunk());
+        for (int page = from; page < to; page++) {
+            xml.append("<url><loc>").append(origin()).append("/page/").append(page).append(".html</loc>")
+                    .append("<lastmod>2024-01-").append(String.format("%02d", page % 28 + 1)).append("</lastmod></url>\n");
+        }
+        return xml.append("</urlset>\n").toString();
+    }
+
+    private String origin() {
+        return "http://127.0.0.1:" + settings.getPort();
+    }
+
+    private static void appendLink(StringBuilder html, int page) {
+        html.append("<a href=\"/page/").append(page).append(".html\">Страница ").append(page).append("</a> ");
+    }
+
+    private void sleepLatency() {
+        long delay = settings.getLatency();
+        if (settings.getLatencyJitter() > 0) {
+            delay += ThreadLocalRandom.current().nextLong(settings.getLatencyJitter() + 1);
+        }
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendGzip(HttpExchange exchange, String body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        send(exchange, 200, "application/gzip", compressed.toByteArray());
+    }
+
+    private void send(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        send(exchange, code, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int code, String contentType, byte[] bytes) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+}
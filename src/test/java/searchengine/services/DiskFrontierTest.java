@@ -0,0 +1,142 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class DiskFrontierTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void returnsUrlsInOrderWithDepth() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("https://example.com/"), 0);
+        frontier.add(List.of("https://example.com/a", "https://example.com/b"), 1);
+        assertThat(frontier.size()).isEqualTo(3);
+        assertThat(drain(frontier)).extracting(FrontierUrl::url, FrontierUrl::depth).containsExactly(
+                tuple("https://example.com/", 0),
+                tuple("https://example.com/a", 1),
+                tuple("https://example.com/b", 1));
+        assertThat(frontier.size()).isZero();
+        frontier.discard();
+        assertThat(DiskFrontier.exists(dir)).isFalse();
+    }
+
+    @Test
+    void replaysUrlsNotDoneBeforeCrash() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1", "/2", "/3", "/4"), 0);
+        FrontierUrl first = frontier.poll(1, TimeUnit.SECONDS);
+        FrontierUrl second = frontier.poll(1, TimeUnit.SECONDS);
+        assertThat(second.url()).isEqualTo("/2");
+        frontier.done(first);
+        frontier.checkpoint();
+        frontier.add(List.of("/5"), 1);
+        // процесс «упал»: без close(), последняя контрольная точка — до /2
+
+        DiskFrontier resumed = DiskFrontier.open(dir, true);
+        assertThat(resumed.size()).isEqualTo(4);
+        assertThat(drain(resumed)).extracting(FrontierUrl::url).containsExactly("/2", "/3", "/4", "/5");
+        List<String> all = new ArrayList<>();
+        resumed.forEachUrl(all::add);
+        assertThat(all).containsExactly("/1", "/2", "/3", "/4", "/5");
+        resumed.close();
+    }
+
+    @Test
+    void checkpointDoesNotPassUrlInFlight() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1", "/2", "/3"), 0);
+        FrontierUrl first = frontier.poll(1, TimeUnit.SECONDS);
+        FrontierUrl second = frontier.poll(1, TimeUnit.SECONDS);
+        assertThat(first.url()).isEqualTo("/1");
+        frontier.done(second);
+        frontier.close();
+
+        DiskFrontier resumed = DiskFrontier.open(dir, true);
+        assertThat(drain(resumed)).extracting(FrontierUrl::url).containsExactly("/1", "/2", "/3");
+        resumed.close();
+    }
+
+    @Test
+    void dropsTornRecordAtEndOfLog() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1", "/2"), 0);
+        frontier.close();
+        // запись /3, оборванная на середине адреса
+        Files.write(dir.resolve("frontier.log"), new byte[]{0, 0, 0, 0, 0, 0, 0, 10, '/', '3'},
+                StandardOpenOption.APPEND);
+
+        DiskFrontier resumed = DiskFrontier.open(dir, true);
+        assertThat(resumed.size()).isEqualTo(2);
+        resumed.add(List.of("/4"), 0);
+        assertThat(drain(resumed)).extracting(FrontierUrl::url).containsExactly("/1", "/2", "/4");
+        resumed.close();
+    }
+
+    @Test
+    void requeuesOnlyUrlsBeforeCheckpoint() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1"), 0);
+        frontier.add(List.of("/2", "/3"), 1);
+        frontier.add(List.of("/4"), 2);
+        for (int i = 0; i < 3; i++) {
+            frontier.done(frontier.poll(1, TimeUnit.SECONDS));
+        }
+        frontier.close();
+
+        DiskFrontier resumed = DiskFrontier.open(dir, true);
+        assertThat(resumed.requeue(Set.of("/1", "/3", "/4"))).isEqualTo(2);
+        assertThat(drain(resumed)).extracting(FrontierUrl::url, FrontierUrl::depth).containsExactly(
+                tuple("/4", 2),
+                tuple("/1", 0),
+                tuple("/3", 1));
+        resumed.close();
+    }
+
+    @Test
+    void openWithoutResumeStartsEmpty() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1"), 0);
+        frontier.close();
+        assertThat(DiskFrontier.exists(dir)).isTrue();
+
+        DiskFrontier fresh = DiskFrontier.open(dir, false);
+        assertThat(fresh.size()).isZero();
+        assertThat(fresh.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        fresh.close();
+    }
+
+    @Test
+    void ignoresCorruptCheckpoint() throws Exception {
+        DiskFrontier frontier = DiskFrontier.open(dir, false);
+        frontier.add(List.of("/1", "/2"), 0);
+        frontier.close();
+        Files.writeString(dir.resolve("checkpoint"), "garbage");
+
+        DiskFrontier resumed = DiskFrontier.open(dir, true);
+        assertThat(drain(resumed)).extracting(FrontierUrl::url).containsExactly("/1", "/2");
+        resumed.close();
+    }
+
+    private static List<FrontierUrl> drain(DiskFrontier frontier) throws InterruptedException {
+        List<FrontierUrl> urls = new ArrayList<>();
+        FrontierUrl url;
+        while ((url = frontier.poll(10, TimeUnit.MILLISECONDS)) != null) {
+            urls.add(url);
+        }
+        return urls;
+    }
+}
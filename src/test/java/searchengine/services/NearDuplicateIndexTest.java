@@ -0,0 +1,103 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NearDuplicateIndexTest {
+
+    private static final long FINGERPRINT = 0x5DEECE66DL * 0x9E3779B97F4A7C15L;
+
+    @Test
+    void findsFingerprintWithinMaxDistance() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        index.add("/a", FINGERPRINT);
+        assertThat(index.findOrAdd("/b", FINGERPRINT)).isEqualTo("/a");
+        assertThat(index.findOrAdd("/c", FINGERPRINT ^ 0b111)).isEqualTo("/a");
+    }
+
+    @Test
+    void findsDistantBitsInDifferentBlocks() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        index.add("/a", FINGERPRINT);
+        assertThat(index.findOrAdd("/b", FINGERPRINT ^ (1L | 1L << 21 | 1L << 63))).isEqualTo("/a");
+    }
+
+    @Test
+    void addsFingerprintBeyondMaxDistance() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        index.add("/a", FINGERPRINT);
+        long distant = FINGERPRINT ^ (1L | 1L << 17 | 1L << 33 | 1L << 49);
+        assertThat(index.findOrAdd("/b", distant)).isNull();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findOrAdd("/c", distant)).isEqualTo("/b");
+    }
+
+    @Test
+    void zeroDistanceMatchesOnlyEqualFingerprints() {
+        NearDuplicateIndex index = new NearDuplicateIndex(0);
+        index.add("/a", FINGERPRINT);
+        assertThat(index.findOrAdd("/b", FINGERPRINT ^ 1)).isNull();
+        assertThat(index.findOrAdd("/c", FINGERPRINT)).isEqualTo("/a");
+    }
+
+    @Test
+    void doesNotReportPageAsDuplicateOfItself() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        index.add("/a", FINGERPRINT);
+        assertThat(index.findOrAdd("/a", FINGERPRINT)).isNull();
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        for (int i = 0; i < 3000; i++) {
+            index.add("/" + i, (long) i << 40 | i);
+        }
+        assertThat(index.size()).isEqualTo(3000);
+        assertThat(index.findOrAdd("/copy", 2999L << 40 | 2999)).isEqualTo("/2999");
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAndPunctuation() {
+        String text = "Съешь же ещё этих мягких французских булок, да выпей чаю. ".repeat(3);
+        Long fingerprint = NearDuplicateIndex.fingerprint(text);
+        assertThat(fingerprint).isNotNull();
+        assertThat(NearDuplicateIndex.fingerprint(text.toUpperCase().replace(",", " — ")))
+                .isEqualTo(fingerprint);
+    }
+
+    @Test
+    void fingerprintSkipsShortTexts() {
+        assertThat(NearDuplicateIndex.fingerprint("Короткий текст страницы")).isNull();
+        assertThat(NearDuplicateIndex.fingerprint("")).isNull();
+    }
+
+    @Test
+    void fingerprintsOnlyMainContentOfPage() {
+        String menu = "Главная Новости Статьи Каталог Доставка Оплата Контакты О компании Вакансии Партнёрам ";
+        String footer = "Все права защищены. Политика конфиденциальности. Пользовательское соглашение. ".repeat(3);
+        String first = "Курс валют на сегодня вырос, аналитики ждут дальнейшего роста до конца недели, "
+                + "а банки уже пересмотрели свои прогнозы и повысили ставки по вкладам для частных клиентов";
+        String second = "Новый парк откроется весной, в нём будут детские площадки, каток и летнее кафе, "
+                + "а вдоль реки проложат велосипедные дорожки и поставят скамейки для отдыха горожан";
+
+        Long firstPage = NearDuplicateIndex.fingerprint(Jsoup.parse(page(menu, first, footer)));
+        Long secondPage = NearDuplicateIndex.fingerprint(Jsoup.parse(page(menu, second, footer)));
+
+        assertThat(firstPage).isEqualTo(NearDuplicateIndex.fingerprint(first));
+        assertThat(Long.bitCount(firstPage ^ secondPage)).isGreaterThan(3);
+    }
+
+    @Test
+    void prefersMainElement() {
+        String html = "<body><div>Реклама партнёров</div><main><h1>Заголовок</h1><p>Текст статьи</p></main></body>";
+        assertThat(NearDuplicateIndex.mainText(Jsoup.parse(html))).isEqualTo("Заголовок Текст статьи");
+    }
+
+    private static String page(String menu, String content, String footer) {
+        return "<html><body><header><nav>" + menu + "</nav></header><div class=content><p>" + content
+                + "</p></div><aside>" + menu + "</aside><footer>" + footer + "</footer></body></html>";
+    }
+}
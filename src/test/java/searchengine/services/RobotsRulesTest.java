@@ -0,0 +1,129 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RobotsRulesTest {
+
+    @Test
+    void appliesOnlyGroupForAllAgents() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: Googlebot
+                Disallow: /private
+                Crawl-delay: 10
+
+                User-agent: *
+                Disallow: /admin
+                """);
+        assertThat(rules.isAllowed("/private")).isTrue();
+        assertThat(rules.isAllowed("/admin/users")).isFalse();
+        assertThat(rules.getCrawlDelayMs()).isZero();
+    }
+
+    @Test
+    void sharesRulesBetweenConsecutiveAgents() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: Yandex
+                User-agent: *
+                Disallow: /search
+                """);
+        assertThat(rules.isAllowed("/search?q=1")).isFalse();
+    }
+
+    @Test
+    void longestRuleWinsAndAllowWinsTie() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /docs
+                Allow: /docs/public
+                Allow: /tmp
+                Disallow: /tmp
+                """);
+        assertThat(rules.isAllowed("/docs/internal")).isFalse();
+        assertThat(rules.isAllowed("/docs/public/a")).isTrue();
+        assertThat(rules.isAllowed("/tmp/a")).isTrue();
+        assertThat(rules.isAllowed("/")).isTrue();
+    }
+
+    @Test
+    void dollarAnchorsRuleToEndOfPath() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /exact$
+                """);
+        assertThat(rules.isAllowed("/exact")).isFalse();
+        assertThat(rules.isAllowed("/exact/more")).isTrue();
+    }
+
+    @Test
+    void wildcardMatchesAnyCharacters() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*?
+                Disallow: /private*/drafts
+                """);
+        assertThat(rules.isAllowed("/news")).isTrue();
+        assertThat(rules.isAllowed("/")).isTrue();
+        assertThat(rules.isAllowed("/news?page=2")).isFalse();
+        assertThat(rules.isAllowed("/private-area/x/drafts/1")).isFalse();
+        assertThat(rules.isAllowed("/private-area/published")).isTrue();
+    }
+
+    @Test
+    void wildcardWithDollarKeepsAnchor() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Allow: /files/*.pdf$
+                """);
+        assertThat(rules.isAllowed("/docs/report.pdf")).isFalse();
+        assertThat(rules.isAllowed("/docs/report.pdf?download=1")).isTrue();
+        assertThat(rules.isAllowed("/docs/report.pdf.html")).isTrue();
+        assertThat(rules.isAllowed("/docs/")).isTrue();
+        assertThat(rules.isAllowed("/files/price.pdf")).isTrue();
+    }
+
+    @Test
+    void wildcardPartsMustNotOverlap() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /a*aa$
+                Disallow: /*/*/deep
+                """);
+        assertThat(rules.isAllowed("/aa")).isTrue();
+        assertThat(rules.isAllowed("/aaa")).isFalse();
+        assertThat(rules.isAllowed("/x/deep")).isTrue();
+        assertThat(rules.isAllowed("/x/y/deep")).isFalse();
+    }
+
+    @Test
+    void emptyDisallowAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow:
+                """);
+        assertThat(rules.isAllowed("/anything")).isTrue();
+        assertThat(RobotsRules.EMPTY.isAllowed("/anything")).isTrue();
+    }
+
+    @Test
+    void readsCrawlDelaySitemapsAndSkipsComments() {
+        RobotsRules rules = RobotsRules.parse("""
+                # комментарий
+                User-agent: * # все обходчики
+                Crawl-delay: 2.5
+                Disallow: /cart # корзина
+                Sitemap: https://example.com/sitemap.xml
+                """);
+        assertThat(rules.getCrawlDelayMs()).isEqualTo(2500);
+        assertThat(rules.isAllowed("/cart")).isFalse();
+        assertThat(rules.getSitemaps()).containsExactly("https://example.com/sitemap.xml");
+    }
+
+    @Test
+    void ignoresMalformedCrawlDelay() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\r\nCrawl-delay: soon\r\n");
+        assertThat(rules.getCrawlDelayMs()).isZero();
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SitemapServiceTest {
+
+    private final PageFetcher pageFetcher = mock(PageFetcher.class);
+    private final SitemapService sitemapService = new SitemapService(new CrawlerSettings(), pageFetcher);
+
+    @Test
+    void ignoresImageAndVideoLocations() throws IOException {
+        serve("https://example.com/sitemap.xml", resource("/sitemap/image-sitemap.xml"));
+
+        List<SitemapEntry> entries = read("https://example.com/sitemap.xml");
+
+        assertThat(entries).extracting(SitemapEntry::url, SitemapEntry::lastModified).containsExactly(
+                tuple("https://example.com/gallery", Instant.parse("2024-03-01T00:00:00Z")),
+                tuple("https://example.com/video", Instant.parse("2024-03-02T07:00:00Z")));
+    }
+
+    @Test
+    void followsSitemapIndex() throws IOException {
+        serve("https://example.com/index.xml", stream("""
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>https://example.com/pages.xml</loc></sitemap>
+                </sitemapindex>
+                """));
+        serve("https://example.com/pages.xml", stream("""
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <url><loc> https://example.com/a </loc></url>
+                </urlset>
+                """));
+
+        assertThat(read("https://example.com/index.xml")).extracting(SitemapEntry::url)
+                .containsExactly("https://example.com/a");
+    }
+
+    @Test
+    void acceptsSitemapWithoutNamespace() throws IOException {
+        serve("https://example.com/sitemap.xml", stream("""
+                <urlset><url><loc>https://example.com/a</loc><lastmod>bad date</lastmod></url></urlset>
+                """));
+
+        assertThat(read("https://example.com/sitemap.xml")).extracting(SitemapEntry::url, SitemapEntry::lastModified)
+                .containsExactly(tuple("https://example.com/a", null));
+    }
+
+    private List<SitemapEntry> read(String sitemapUrl) {
+        List<SitemapEntry> entries = new ArrayList<>();
+        sitemapService.read("https://example.com", List.of(sitemapUrl), entries::add);
+        return entries;
+    }
+
+    private void serve(String url, InputStream body) throws IOException {
+        when(pageFetcher.open(url)).thenReturn(new PageFetcher.StreamResponse(200, body));
+    }
+
+    private static InputStream resource(String name) {
+        return SitemapServiceTest.class.getResourceAsStream(name);
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlNormalizerTest {
+
+    private final UrlNormalizer normalizer = new UrlNormalizer("https://www.example.com", List.of("utm_*", "gclid"));
+
+    @Test
+    void lowercasesSchemeAndHostButNotPath() {
+        assertThat(normalizer.normalize("HTTPS://WWW.Example.COM/News/Item"))
+                .isEqualTo("https://www.example.com/News/Item");
+    }
+
+    @Test
+    void mapsHttpAndWwwVariantsToSiteHost() {
+        assertThat(normalizer.normalize("http://example.com/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://example.com./a")).isEqualTo("https://www.example.com/a");
+    }
+
+    @Test
+    void dropsDefaultPortsAndRejectsOtherPorts() {
+        assertThat(normalizer.normalize("https://www.example.com:443/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("http://www.example.com:80/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://www.example.com:8443/a")).isNull();
+    }
+
+    @Test
+    void keepsNonDefaultPortOfSite() {
+        UrlNormalizer local = new UrlNormalizer("http://localhost:8080", List.of());
+        assertThat(local.normalize("http://localhost:8080/a")).isEqualTo("http://localhost:8080/a");
+        assertThat(local.normalize("http://localhost/a")).isNull();
+    }
+
+    @Test
+    void dropsFragment() {
+        assertThat(normalizer.normalize("https://www.example.com/a#top")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://www.example.com/a?x=1#top")).isEqualTo("https://www.example.com/a?x=1");
+    }
+
+    @Test
+    void normalizesSlashesAndDotSegments() {
+        assertThat(normalizer.normalize("https://www.example.com")).isEqualTo("https://www.example.com/");
+        assertThat(normalizer.normalize("https://www.example.com/")).isEqualTo("https://www.example.com/");
+        assertThat(normalizer.normalize("https://www.example.com/a/")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://www.example.com//a///b/")).isEqualTo("https://www.example.com/a/b");
+        assertThat(normalizer.normalize("https://www.example.com/a/./b/../c")).isEqualTo("https://www.example.com/a/c");
+        assertThat(normalizer.normalize("https://www.example.com/../a")).isEqualTo("https://www.example.com/a");
+    }
+
+    @Test
+    void sortsQueryAndDropsIgnoredParameters() {
+        assertThat(normalizer.normalize("https://www.example.com/a?b=2&a=1"))
+                .isEqualTo(normalizer.normalize("https://www.example.com/a?a=1&b=2"))
+                .isEqualTo("https://www.example.com/a?a=1&b=2");
+        assertThat(normalizer.normalize("https://www.example.com/a?utm_source=x&b=2&GCLID=1&utm_medium=y"))
+                .isEqualTo("https://www.example.com/a?b=2");
+        assertThat(normalizer.normalize("https://www.example.com/a?utm_source=x&&")).isEqualTo("https://www.example.com/a");
+    }
+
+    @Test
+    void rejectsForeignAndNonHttpUrls() {
+        assertThat(normalizer.normalize("https://other.com/a")).isNull();
+        assertThat(normalizer.normalize("https://sub.example.com/a")).isNull();
+        assertThat(normalizer.normalize("mailto:info@example.com")).isNull();
+        assertThat(normalizer.normalize("/relative")).isNull();
+        assertThat(normalizer.normalize("  ")).isNull();
+        assertThat(normalizer.normalize(null)).isNull();
+    }
+
+    @Test
+    void restrictsToBasePathOfSite() {
+        UrlNormalizer blog = new UrlNormalizer("https://example.com/blog/", List.of());
+        assertThat(blog.normalize("https://example.com/blog")).isEqualTo("https://example.com/blog");
+        assertThat(blog.normalize("https://example.com/blog/post")).isEqualTo("https://example.com/blog/post");
+        assertThat(blog.normalize("https://example.com/blogger")).isNull();
+        assertThat(blog.normalize("https://example.com/shop")).isNull();
+    }
+
+    @Test
+    void convertsBetweenUrlAndStoredPath() {
+        String url = normalizer.normalize("https://www.example.com/a?b=2");
+        assertThat(normalizer.toPath(url)).isEqualTo("/a?b=2");
+        assertThat(normalizer.toUrl(normalizer.toPath(url))).isEqualTo(url);
+        assertThat(normalizer.toPath("https://www.example.com")).isEqualTo("/");
+    }
+}
@@ -0,0 +1,123 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link LemmaFinder.WordCounts} должен делить текст на слова так же,
+ * как прежнее разбиение регулярными выражениями.
+ */
+class WordCountsTest {
+
+    private static final Pattern NON_LETTERS = Pattern.compile("[^a-zа-я\\s]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    @Test
+    void replacesYoWithYe() {
+        assertThat(countWords("Ёлка, ёжик и ЕЛКА")).containsExactlyInAnyOrderEntriesOf(
+                Map.of("елка", 2, "ежик", 1, "и", 1));
+        assertMatchesRegexSplit("Ёлка, ёжик и ЕЛКА — всё ещё её");
+    }
+
+    @Test
+    void keepsMixedLatinAndCyrillicWordsTogether() {
+        assertThat(countWords("iPhone и Айфон, приветWorld")).containsExactlyInAnyOrderEntriesOf(
+                Map.of("iphone", 1, "и", 1, "айфон", 1, "приветworld", 1));
+        assertMatchesRegexSplit("Java-разработчик пишет на Kotlin и Java; PostgreSQL/MySQL");
+    }
+
+    @Test
+    void splitsOnDigits() {
+        assertThat(countWords("abc123def 2024год")).containsExactlyInAnyOrderEntriesOf(
+                Map.of("abc", 1, "def", 1, "год", 1));
+        assertMatchesRegexSplit("Версия 2.0 вышла 12.03.2024, цена 1 999 руб.");
+    }
+
+    @Test
+    void splitsOnApostrophesAndPunctuation() {
+        assertThat(countWords("don't rock'n'roll")).containsExactlyInAnyOrderEntriesOf(
+                Map.of("don", 1, "t", 1, "rock", 1, "n", 1, "roll", 1));
+        assertMatchesRegexSplit("It’s O'Reilly's «книга» (2-е изд.)!\tСм. стр.\n\nдалее...");
+    }
+
+    @Test
+    void handlesEmptyAndSeparatorOnlyText() {
+        assertThat(countWords("")).isEmpty();
+        assertThat(countWords(" \n 123 ... ")).isEmpty();
+        assertMatchesRegexSplit("слово");
+    }
+
+    @Test
+    void growsTableForManyDistinctWords() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(spell(i)).append(i % 3 == 0 ? ", " : " ");
+        }
+        text.append(spell(42)).append(' ').append(spell(4999));
+        Map<String, Integer> counts = countWords(text.toString());
+        assertThat(counts).hasSize(5000);
+        assertThat(counts).containsEntry(spell(42), 2).containsEntry(spell(4999), 2).containsEntry(spell(0), 1);
+        assertThat(counts).isEqualTo(regexSplit(text.toString()));
+    }
+
+    @Test
+    void matchesRegexSplitOnRandomText() {
+        String alphabet = "abcxyzABCXYZабвэюяАБВЭЮЯёЁ0123456789 \t\n.,'’-—«»!?";
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(2000);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesRegexSplit(text.toString());
+        }
+    }
+
+    private static void assertMatchesRegexSplit(String text) {
+        assertThat(countWords(text)).as(text).isEqualTo(regexSplit(text));
+    }
+
+    private static Map<String, Integer> countWords(String text) {
+        LemmaFinder.WordCounts words = new LemmaFinder.WordCounts(text);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int slot = words.next(0); slot >= 0; slot = words.next(slot + 1)) {
+            counts.put(words.word(slot), words.count(slot));
+        }
+        assertThat(counts).hasSize(words.size());
+        return counts;
+    }
+
+    /**
+     * Разбиение на слова, которое {@link LemmaFinder} использовал до {@code WordCounts}.
+     */
+    private static Map<String, Integer> regexSplit(String text) {
+        String cleared = NON_LETTERS.matcher(text.toLowerCase(Locale.ROOT).replace('ё', 'е')).replaceAll(" ");
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : SPACES.split(cleared.trim())) {
+            if (!word.isEmpty()) {
+                counts.merge(word, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Слово из русских букв, разное для разных {@code n}.
+     */
+    private static String spell(int n) {
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append((char) ('а' + n % 32));
+            n /= 32;
+        } while (n > 0);
+        return word.toString();
+    }
+}